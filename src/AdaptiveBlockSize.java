@@ -0,0 +1,305 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         AdaptiveBlockSize.java            	                   ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Picks the size of the blocks written to an audio line, ###
+ ###                trading latency against dropouts                       ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An AdaptiveBlockSize decides how many bytes are sent to an audio line per write.
+ * It is called right before every write, looks at how much audio the line still has
+ * queued, and resizes the block:
+ * <ul>
+ * <li>less than the safety margin queued, before the write or after waiting for it
+ *     (see below), is a near underrun, the block grows by half straight away;</li>
+ * <li>the block shrinks by an eighth only when, over a whole WINDOW_NANOS, even the
+ *     lowest amount queued would still have left the margin after shrinking.</li>
+ * </ul>
+ * One stall shows up in every write of the burst that follows it, so after growing,
+ * the block doesn't grow again until a write has found the margin queued again.
+ * After a near underrun the block never shrinks below the size it grew to, so the
+ * size ratchets up to what the machine needs and settles there instead of probing
+ * for dropouts again and again. Only after RETRY_NANOS without a near underrun is
+ * that floor forgotten, so a block size that was too small while the JVM was warming
+ * up (or the machine was busy) is tried again now and then.
+ * The lowest amount queued over a window is what counts because writes come in bursts:
+ * the first write after the mixer renders a block finds the line at its lowest, and the
+ * writes after it in the same burst always find plenty queued. The margin is a quarter
+ * of a block but never less than MIN_MARGIN_MILLIS, which covers ordinary thread
+ * wake-up jitter even when the blocks are tiny.
+ * <p>
+ * Before returning, the controller also waits until no more than one block and the
+ * margin are queued, which keeps the latency at about two blocks plus the margin
+ * instead of the whole line. The margin matters here too: a thread asked to sleep
+ * until exactly one tiny block is left often oversleeps and finds the line empty.
+ * <p>
+ * The line is anything that reports its size and free space (see {@link Line}), so
+ * AudioUtils drives it with the sound card and AdaptiveBufferCheck with a simulated line.
+ *
+ * @author Michael M
+ */
+public final class AdaptiveBlockSize {
+
+	/**
+	 * The part of an audio line the controller looks at, named as in SourceDataLine.
+	 */
+	public interface Line {
+
+		/**
+		 * @return The size of the line's buffer, in bytes
+		 */
+		int getBufferSize();
+
+		/**
+		 * @return How many bytes can be written without blocking
+		 */
+		int available();
+	}
+
+	// Never wait for less than this much audio to be queued, in milliseconds
+	public static final double MIN_MARGIN_MILLIS = 10;
+
+	// How long the lowest queued amount is watched before shrinking, in nanoseconds
+	public static final long WINDOW_NANOS = 500_000_000L;
+
+	// How long without a near underrun before smaller blocks are tried again, in nanoseconds
+	public static final long RETRY_NANOS = 120_000_000_000L;
+
+	private static final int HISTORY_SIZE = 64; // block size changes remembered
+
+	// The line and its format
+	private final Line line;
+	private final int  bytesPerFrame;
+	private final int  sampleRate;
+
+	// Limits of the block size and the smallest margin, in bytes
+	private final int minBlockBytes;
+	private final int maxBlockBytes;
+	private final int minMarginBytes;
+
+	private volatile int blockBytes;    // bytes sent to the line per write
+	private volatile int nearUnderruns; // writes that found the line nearly empty
+
+	// The smallest block size allowed since the last near underrun, and when that was
+	private int     floorBytes;
+	private long    lastNearUnderrun;
+	private boolean recovering; // grown, but the line hasn't refilled to the margin yet
+
+	// The window: when it started and the lowest amount queued since then
+	private long windowStart = -1;
+	private int  windowLowest;
+
+	// Ring of the most recent block size changes (kept as primitives so beforeWrite never allocates)
+	private final long[] historyNanos  = new long[HISTORY_SIZE];
+	private final int[]  historyOld    = new int[HISTORY_SIZE];
+	private final int[]  historyNew    = new int[HISTORY_SIZE];
+	private final int[]  historyQueued = new int[HISTORY_SIZE];
+	private       int    historyCount  = 0;
+	private final Object historyLock   = new Object();
+
+
+
+	/**
+	 * Create a controller for a line.
+	 *
+	 * @param line          The line the blocks are written to
+	 * @param bytesPerFrame Bytes in one frame of the line's format
+	 * @param sampleRate    Frames per second
+	 * @param initialBytes  The block size to start with
+	 * @param minBytes      The smallest block size
+	 * @param maxBytes      The largest block size
+	 * @throws IllegalArgumentException if the sizes are out of order
+	 */
+	public AdaptiveBlockSize(Line line, int bytesPerFrame, int sampleRate, int initialBytes, int minBytes, int maxBytes) {
+		if (minBytes < bytesPerFrame || minBytes > initialBytes || initialBytes > maxBytes) {
+			throw new IllegalArgumentException("Error - " + "expected a frame <= min <= initial <= max block size, got "
+					+ minBytes + ", " + initialBytes + ", " + maxBytes + " bytes");
+		}
+		this.line = line;
+		this.bytesPerFrame = bytesPerFrame;
+		this.sampleRate = sampleRate;
+		this.minBlockBytes = minBytes / bytesPerFrame * bytesPerFrame;
+		this.maxBlockBytes = maxBytes / bytesPerFrame * bytesPerFrame;
+		this.minMarginBytes = (int) (MIN_MARGIN_MILLIS * sampleRate / 1000) * bytesPerFrame;
+		this.blockBytes = initialBytes / bytesPerFrame * bytesPerFrame;
+	}
+
+
+
+	/**
+	 * Look at the line before a block is written: resize the block if needed, then
+	 * wait until no more than one block and the margin are queued.
+	 *
+	 * @return How many bytes were queued in the line before waiting
+	 */
+	public int beforeWrite() {
+		long now    = System.nanoTime();
+		int  queued = line.getBufferSize() - line.available();
+		int  block  = blockBytes;
+
+		if (windowStart < 0) {
+			// The very first write always finds the line empty, that is no underrun
+			windowStart = now;
+			windowLowest = Integer.MAX_VALUE;
+		} else if (queued < margin(block)) {
+			if (!recovering) {
+				grow(block, queued, now);
+			}
+		} else {
+			recovering = false;
+			windowLowest = Math.min(windowLowest, queued);
+			if (now - windowStart >= WINDOW_NANOS) {
+				if (now - lastNearUnderrun >= RETRY_NANOS) {
+					floorBytes = 0;
+				}
+
+				// Shrinking takes an eighth off both blocks that are queued at the lowest point
+				int smaller = (block - block / 8) / bytesPerFrame * bytesPerFrame;
+				if (smaller >= floorBytes && windowLowest - 2 * (block - smaller) >= margin(smaller)) {
+					resize(block, smaller, windowLowest, now);
+				}
+				windowStart = now;
+				windowLowest = Integer.MAX_VALUE;
+			}
+		}
+
+		// the slack: sleep until only one block and the margin are left in the line
+		int excess = queued - blockBytes - margin(blockBytes);
+		if (excess > 0) {
+			LockSupport.parkNanos((long) excess / bytesPerFrame * 1_000_000_000L / sampleRate);
+
+			// Oversleeping can use up the margin too
+			int left = line.getBufferSize() - line.available();
+			if (left < margin(blockBytes) && !recovering) {
+				grow(blockBytes, left, System.nanoTime());
+			}
+		}
+		return queued;
+	}
+
+
+
+	/**
+	 * A near underrun: grow the block by half and don't shrink below the new size.
+	 */
+	private void grow(int block, int queued, long now) {
+		nearUnderruns++;
+		lastNearUnderrun = now;
+		resize(block, block * 3 / 2, queued, now);
+		floorBytes = blockBytes;
+		recovering = true;
+		windowStart = now;
+		windowLowest = Integer.MAX_VALUE;
+	}
+
+
+
+	/**
+	 * @return The amount that must stay queued with a block of this size, in bytes
+	 */
+	private int margin(int block) {
+		return Math.max(block / 4, minMarginBytes);
+	}
+
+
+
+	/**
+	 * Change the block size (clamped and rounded to whole frames) and remember the change.
+	 */
+	private void resize(int oldBytes, int newBytes, int queued, long now) {
+		newBytes = Math.max(minBlockBytes, Math.min(maxBlockBytes, newBytes)) / bytesPerFrame * bytesPerFrame;
+		if (newBytes == oldBytes) return;
+		blockBytes = newBytes;
+		synchronized (historyLock) {
+			int i = historyCount++ % HISTORY_SIZE;
+			historyNanos[i] = now;
+			historyOld[i] = oldBytes;
+			historyNew[i] = newBytes;
+			historyQueued[i] = queued;
+		}
+	}
+
+
+
+	/**
+	 * @return The current block size in bytes
+	 */
+	public int getBlockBytes() {
+		return blockBytes;
+	}
+
+
+
+	/**
+	 * @return How much must stay queued in the line with the current block size, in bytes
+	 */
+	public int getMarginBytes() {
+		return margin(blockBytes);
+	}
+
+
+
+	/**
+	 * @return How many writes found the line nearly empty (each one grew the block)
+	 */
+	public int getNearUnderruns() {
+		return nearUnderruns;
+	}
+
+
+
+	/**
+	 * The most recent changes of the block size, oldest first.
+	 *
+	 * @return up to the last 64 changes
+	 */
+	public List<BlockSizeChange> getHistory() {
+		synchronized (historyLock) {
+			int                        count   = Math.min(historyCount, HISTORY_SIZE);
+			ArrayList<BlockSizeChange> changes = new ArrayList<>(count);
+			for (int n = historyCount - count; n < historyCount; n++) {
+				int i = n % HISTORY_SIZE;
+				changes.add(new BlockSizeChange(historyNanos[i], historyOld[i], historyNew[i], historyQueued[i]));
+			}
+			return changes;
+		}
+	}
+
+
+
+	/**
+	 * One change of the block size.
+	 */
+	public static final class BlockSizeChange {
+		public final long nanoTime;    // System.nanoTime() of the change
+		public final int  oldBytes;    // block size before
+		public final int  newBytes;    // block size after
+		public final int  queuedBytes; // bytes queued in the line when it was decided (the window's lowest when shrinking)
+
+		BlockSizeChange(long nanoTime, int oldBytes, int newBytes, int queuedBytes) {
+			this.nanoTime = nanoTime;
+			this.oldBytes = oldBytes;
+			this.newBytes = newBytes;
+			this.queuedBytes = queuedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s %d -> %d bytes (%d queued)",
+					newBytes > oldBytes ? "grew" : "shrank", oldBytes, newBytes, queuedBytes);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         AdaptiveBufferCheck.java            	                   ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Checks that the adaptive block size settles without    ###
+ ###                dropouts, against a simulated sound card line          ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The AdaptiveBufferCheck runs AudioUtils' adaptive mode without a sound card. A
+ * {@link MixerEngine} plays GuitarHero's instrument (with keys being typed into it)
+ * through the same {@link LineWriter} AudioUtils.play uses in adaptive mode, which
+ * converts the samples to 16-bit bytes and writes them in blocks sized by an
+ * {@link AdaptiveBlockSize}, to a simulated line of the same size as AudioUtils opens
+ * in adaptive mode. The line
+ * drains at the sample rate in real time and counts an underrun whenever it has run
+ * dry by the time it is next looked at.
+ * <p>
+ * The block size is given some time to settle, then the check watches it. It passes
+ * if the line never ran dry after settling and the block size didn't oscillate: it
+ * may still grow when the machine stalls, but it must not shrink back below a size
+ * it just had to grow from (within AdaptiveBlockSize.RETRY_NANOS). How often it
+ * grows depends on the machine, so that is only reported. The check prints PASS or
+ * FAIL (exiting with status 0 or 1) along with the block size changes.
+ * <p>
+ * Usage: java AdaptiveBufferCheck [seconds] [settleSeconds] [keysPerSecond]
+ *
+ * @author Michael M
+ */
+public final class AdaptiveBufferCheck {
+
+	// The typing thread, and whether it should keep going
+	private static volatile boolean typing = true;
+
+	// Not meant to be instantiated, see main
+	private AdaptiveBufferCheck() { }
+
+
+
+	/**
+	 * Entry point, runs the engine against the simulated line and checks the result.
+	 *
+	 * @param args optional run time and settling time in seconds, and typing rate
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		double seconds       = args.length > 0 ? Double.parseDouble(args[0]) : 30;
+		double settleSeconds = args.length > 1 ? Double.parseDouble(args[1]) : 20;
+		double keysPerSecond = args.length > 2 ? Double.parseDouble(args[2]) : 50;
+
+		SimulatedLine     line       = new SimulatedLine(LineWriter.lineBytes(true));
+		LineWriter        writer     = new LineWriter(line, true);
+		AdaptiveBlockSize controller = writer.getController();
+		MixerEngine       engine     = new MixerEngine(writer::play);
+		InstrumentBank bank    = InstrumentBank.guitarHero();
+		MixerSession   session = new MixerSession(bank.getKeyboard(), bank.newStrings(), 1);
+		engine.addSession(session);
+
+		Thread typist = new Thread("typist") {
+			public void run() {
+				Random random = new Random(0);
+				long   period = (long) (1e9 / keysPerSecond);
+				long   next   = System.nanoTime();
+				while (typing) {
+					next += period;
+					LockSupport.parkNanos(next - System.nanoTime());
+					session.keyTyped(bank.getKeyboard().charAt(random.nextInt(bank.numKeys())));
+				}
+			}
+		};
+		typist.setDaemon(true);
+
+		engine.start();
+		typist.start();
+
+		System.out.printf("Settling for %.1f s%n", settleSeconds);
+		Thread.sleep((long) (settleSeconds * 1000));
+		int  underrunsBefore = line.getUnderruns();
+		int  changesBefore   = controller.getHistory().size();
+		long measureStart    = System.nanoTime();
+		System.out.printf("Measuring for %.1f s%n", seconds);
+		Thread.sleep((long) (seconds * 1000));
+		int underruns = line.getUnderruns() - underrunsBefore;
+
+		typing = false;
+		engine.stop();
+
+		List<AdaptiveBlockSize.BlockSizeChange> history      = controller.getHistory();
+		int                                     grew         = 0;
+		int                                     oscillations = 0;
+		AdaptiveBlockSize.BlockSizeChange       lastGrow     = null;
+		for (AdaptiveBlockSize.BlockSizeChange change : history) {
+			boolean measured = change.nanoTime >= measureStart;
+			System.out.printf("%8.3f s %s %s%n", (change.nanoTime - measureStart) / 1e9, change, measured ? "" : "(settling)");
+			if (change.newBytes > change.oldBytes) {
+				lastGrow = change;
+				grew += measured ? 1 : 0;
+			} else if (measured && lastGrow != null && change.newBytes <= lastGrow.oldBytes
+					&& change.nanoTime - lastGrow.nanoTime < AdaptiveBlockSize.RETRY_NANOS) {
+				oscillations++;
+			}
+		}
+		double bytesPerMilli = AudioUtils.BYTES_PER_SAMPLE * AudioUtils.SAMPLE_RATE / 1000.0;
+		double blockMillis   = controller.getBlockBytes() / bytesPerMilli;
+		double latencyMillis = 2 * blockMillis + controller.getMarginBytes() / bytesPerMilli;
+		System.out.printf("Final block %d bytes (%.1f ms, up to %.1f ms latency), %d changes while measuring "
+				+ "(%d grew, %d shrank below a size it grew from), %d near underruns, %d underruns while measuring (%d in all)%n",
+				controller.getBlockBytes(), blockMillis, latencyMillis, history.size() - changesBefore, grew,
+				oscillations, controller.getNearUnderruns(), underruns, line.getUnderruns());
+		if (underruns > 0 || oscillations > 0) {
+			System.out.println("FAIL: the block size didn't settle without dropouts");
+			System.exit(1);
+		}
+		System.out.println("PASS");
+	}
+
+
+
+	/**
+	 * A sound card line that plays its bytes at the sample rate in real time, like
+	 * NullAudioSink does with frames.
+	 */
+	private static final class SimulatedLine implements LineWriter.Line {
+
+		// How many bytes the line holds
+		private final int bufferBytes;
+
+		// When the line's clock (re)started and how many bytes were written since then
+		private long startNanos = -1;
+		private long bytesSinceStart;
+
+		private volatile int underruns; // times the line ran dry
+
+		SimulatedLine(int bufferBytes) {
+			this.bufferBytes = bufferBytes;
+		}
+
+		/**
+		 * @return Bytes still waiting to be played, restarting the clock if the line ran dry
+		 */
+		private synchronized long queued() {
+			long now = System.nanoTime();
+			if (startNanos < 0) {
+				startNanos = now;
+			}
+			long played = (now - startNanos) * AudioUtils.SAMPLE_RATE / 1_000_000_000L * AudioUtils.BYTES_PER_SAMPLE;
+			long queued = bytesSinceStart - played;
+			if (queued < 0) {
+				if (bytesSinceStart > 0) {
+					underruns++;
+				}
+				startNanos = now;
+				bytesSinceStart = 0;
+				queued = 0;
+			}
+			return queued;
+		}
+
+		@Override
+		public int getBufferSize() {
+			return bufferBytes;
+		}
+
+		@Override
+		public int available() {
+			return (int) (bufferBytes - queued());
+		}
+
+		/**
+		 * Write bytes, waiting (like SourceDataLine.write) until they fit.
+		 */
+		@Override
+		public int write(byte[] bytes, int offset, int length) {
+			long overflow = queued() + length - bufferBytes;
+			if (overflow > 0) {
+				LockSupport.parkNanos(overflow / AudioUtils.BYTES_PER_SAMPLE * 1_000_000_000L / AudioUtils.SAMPLE_RATE);
+			}
+			synchronized (this) {
+				bytesSinceStart += length;
+			}
+			return length;
+		}
+
+		int getUnderruns() {
+			return underruns;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         AllocationCheck.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Fails if the audio path allocates after warm-up        ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The AllocationCheck tests that the audio path doesn't allocate once it is warmed
+ * up, since every allocation brings the next garbage collection pause (and the click
+ * it causes) closer. It runs a {@link MixerEngine} with GuitarHero's instrument
+ * against a {@link NullAudioSink}, types keys into the sessions the same way the
+ * JavaFX key handler does, and watches the bytes allocated by the music thread and
+ * the typing thread through ThreadMXBean.
+ * <p>
+ * The strings take their delay lines from the {@link InstrumentBank}'s pools when they
+ * are plucked, with the same few spare delay lines GuitarHero keeps ready, so the
+ * pools grow in the background as more strings sound at once. At a slow typing rate
+ * (say 3 keys per second) they are still growing while the check measures. After the
+ * warm-up, neither thread may allocate a single byte. The check prints
+ * PASS or FAIL and exits with status 0 or 1, so it can be run from a script.
+ * <p>
+ * Usage: java AllocationCheck [seconds] [warmupSeconds] [keysPerSecond] [sessions]
+ *
+ * @author Michael M
+ */
+public final class AllocationCheck {
+
+	// The typing thread, and whether it should keep going
+	private static volatile boolean typing = true;
+
+	// How many random key presses the typist picks before it starts, and then repeats
+	private static final int NUM_PRESSES = 4096;
+
+	// Free delay lines kept ready for the next plucks, as in GuitarHero
+	private static final int SPARE_DELAY_LINES = 4;
+
+	// Not meant to be instantiated, see main
+	private AllocationCheck() { }
+
+
+
+	/**
+	 * Entry point, runs the engine and checks the allocations.
+	 *
+	 * @param args optional run time, warm-up time, typing rate and number of sessions
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		double seconds       = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+		double warmupSeconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+		double keysPerSecond = args.length > 2 ? Double.parseDouble(args[2]) : 50;
+		int    numSessions   = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("FAIL: this JVM can't measure per-thread allocation");
+			System.exit(1);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		InstrumentBank bank     = InstrumentBank.guitarHero();
+		MixerEngine    engine   = new MixerEngine(new NullAudioSink(4096));
+		MixerSession[] sessions = new MixerSession[numSessions];
+		for (int s = 0; s < numSessions; s++) {
+			sessions[s] = new MixerSession(InstrumentBank.GUITAR_HERO_KEYBOARD, bank.newStrings(), 100);
+			engine.addSession(sessions[s]);
+		}
+		bank.keepSpare(SPARE_DELAY_LINES);
+
+		// Pick the presses up front, so the typist only runs the code the key handler does
+		// and the measurement doesn't include the JIT compiling the random generator
+		Random         random  = new Random(0);
+		MixerSession[] targets = new MixerSession[NUM_PRESSES];
+		char[]         keys    = new char[NUM_PRESSES];
+		for (int i = 0; i < NUM_PRESSES; i++) {
+			targets[i] = sessions[random.nextInt(sessions.length)];
+			keys[i]    = InstrumentBank.GUITAR_HERO_KEYBOARD.charAt(random.nextInt(InstrumentBank.GUITAR_HERO_KEYBOARD.length()));
+		}
+
+		Thread typist = new Thread("typist") {
+			public void run() {
+				long period = (long) (1e9 / keysPerSecond);
+				long next   = System.nanoTime();
+				int  press  = 0;
+				while (typing) {
+					next += period;
+					LockSupport.parkNanos(next - System.nanoTime());
+					targets[press].keyTyped(keys[press]);
+					press = (press + 1) % NUM_PRESSES;
+				}
+			}
+		};
+		typist.setDaemon(true);
+
+		engine.start();
+		typist.start();
+		long musicId  = engine.getMusicThread().getId();
+		long typistId = typist.getId();
+
+		System.out.printf("Warming up for %.1f s%n", warmupSeconds);
+		Thread.sleep((long) (warmupSeconds * 1000));
+
+		long musicBefore  = threads.getThreadAllocatedBytes(musicId);
+		long typistBefore = threads.getThreadAllocatedBytes(typistId);
+		int  linesBefore  = bank.getAllocatedDelayLines();
+		System.out.printf("Measuring for %.1f s%n", seconds);
+		Thread.sleep((long) (seconds * 1000));
+		long musicGrowth  = threads.getThreadAllocatedBytes(musicId) - musicBefore;
+		long typistGrowth = threads.getThreadAllocatedBytes(typistId) - typistBefore;
+
+		typing = false;
+		engine.stop();
+
+		System.out.printf("musicThread allocated %d bytes, typist allocated %d bytes (%d frames mixed)%n",
+				musicGrowth, typistGrowth, engine.getFramePosition());
+		System.out.printf("delay lines: %d before measuring, %d after, %d plucks waited for one%n",
+				linesBefore, bank.getAllocatedDelayLines(), bank.getDelayLineShortfalls());
+		if (musicGrowth > 0 || typistGrowth > 0) {
+			System.out.println("FAIL: the audio path allocated after warm-up");
+			System.exit(1);
+		}
+		System.out.println("PASS");
+	}
+}
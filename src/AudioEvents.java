@@ -0,0 +1,203 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         AudioEvents.java            	                           ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Java Flight Recorder events for the synthesis hot      ###
+ ###                paths of the audio engine                              ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Custom Java Flight Recorder events emitted by the audio engine. Each event is
+ * a duration event, so the time between begin() and end() is what the recording
+ * shows as the cost of that step.
+ * <p>
+ * Usage:
+ * <pre>
+ *     AudioEvents.PluckEvent event = AudioEvents.begin(AudioEvents.PLUCK, AudioEvents.PluckEvent::new);
+ *     ... do the work ...
+ *     if (AudioEvents.end(event)) {
+ *         event.delayLength = ...;
+ *         event.commit();
+ *     }
+ * </pre>
+ * begin only creates an event when a recording has that event type enabled (it
+ * asks a probe instance of the type that is never committed) and returns null
+ * otherwise. Rarely run code like pluck may never be compiled by the JIT, so
+ * relying on the JIT to remove an unused event object would still allocate one
+ * per call; this way turning the events off costs a flag check and no garbage.
+ * Fields are only filled in once end returns true for the same reason.
+ * <p>
+ * To record a running session continuously:
+ * <pre>
+ *     java -XX:StartFlightRecording=disk=true,maxage=10m,filename=guitar.jfr GuitarHero
+ * </pre>
+ *
+ * @author Michael M
+ */
+public final class AudioEvents {
+
+	// Category shared by every event, so they group together in JDK Mission Control
+	private static final String CATEGORY = "Guitar Hero";
+
+	// Probes for asking whether each event type is enabled, never begun or committed
+	static final MixBlockEvent           MIX_BLOCK           = new MixBlockEvent();
+	static final PluckEvent              PLUCK               = new PluckEvent();
+	static final DeviceWriteEvent        DEVICE_WRITE        = new DeviceWriteEvent();
+	static final KeyDequeueEvent         KEY_DEQUEUE         = new KeyDequeueEvent();
+	static final VisualizerSnapshotEvent VISUALIZER_SNAPSHOT = new VisualizerSnapshotEvent();
+
+	// Not meant to be instantiated, this only holds the event types
+	private AudioEvents() { }
+
+
+
+	/**
+	 * Start timing an event if its type is being recorded.
+	 *
+	 * @param probe   The probe for the event type
+	 * @param factory Creates a new event of the type (a constructor reference)
+	 * @param <E>     The event type
+	 * @return The begun event, or null if no recording has the event type enabled
+	 */
+	static <E extends Event> E begin(E probe, Supplier<E> factory) {
+		if (!probe.isEnabled()) {
+			return null;
+		}
+		E event = factory.get();
+		event.begin();
+		return event;
+	}
+
+
+
+	/**
+	 * Stop timing an event started with begin.
+	 *
+	 * @param event The event returned by begin, may be null
+	 * @return true if the event should be filled in and committed
+	 */
+	static boolean end(Event event) {
+		if (event == null) {
+			return false;
+		}
+		event.end();
+		return event.shouldCommit();
+	}
+
+
+
+	/**
+	 * Rendering of one block of mixed samples (every string sampled and advanced
+	 * once per frame of the block).
+	 */
+	@Name("guitarhero.MixBlock")
+	@Label("Mix Block Render")
+	@Category({CATEGORY, "Synthesis"})
+	@Description("Rendering of one block of mixed samples")
+	public static final class MixBlockEvent extends Event {
+
+		@Label("Frames")
+		@Description("Number of sample frames rendered in the block")
+		public int frames;
+
+		@Label("Active Voices")
+		@Description("Number of strings still sounding at the end of the block")
+		public int activeVoices;
+	}
+
+
+
+	/**
+	 * Excitation of a single guitar string (filling its delay line with noise).
+	 */
+	@Name("guitarhero.Pluck")
+	@Label("Pluck")
+	@Category({CATEGORY, "Synthesis"})
+	@Description("Excitation of a single guitar string")
+	public static final class PluckEvent extends Event {
+
+		@Label("Frequency")
+		@Description("Frequency the plucked string was created with, in Hz")
+		public double frequency;
+
+		@Label("Delay Length")
+		@Description("Number of samples in the plucked string's delay line")
+		public int delayLength;
+	}
+
+
+
+	/**
+	 * A write of buffered samples to the sound card. The duration is the time
+	 * spent blocked inside SourceDataLine.write.
+	 */
+	@Name("guitarhero.DeviceWrite")
+	@Label("Device Write")
+	@Category({CATEGORY, "Output"})
+	@Description("Write of buffered samples to the audio line, duration is the time blocked in write")
+	public static final class DeviceWriteEvent extends Event {
+
+		@Label("Bytes")
+		@DataAmount
+		@Description("Number of bytes handed to the line")
+		public int bytes;
+
+		@Label("Line Available")
+		@DataAmount
+		@Description("Free space in the line's buffer just before the write")
+		public int available;
+	}
+
+
+
+	/**
+	 * Removal of one typed key from the input queue by the music thread.
+	 */
+	@Name("guitarhero.KeyDequeue")
+	@Label("Key Event Dequeue")
+	@Category({CATEGORY, "Input"})
+	@Description("Removal of one typed key from the input queue")
+	public static final class KeyDequeueEvent extends Event {
+
+		@Label("Key")
+		@Description("The key that was dequeued")
+		public String key;
+
+		@Label("Pending Keys")
+		@Description("Keys still waiting in the queue after this one")
+		public int pending;
+	}
+
+
+
+	/**
+	 * One frame of the string visualization (copying and drawing the samples).
+	 */
+	@Name("guitarhero.VisualizerSnapshot")
+	@Label("Visualizer Snapshot")
+	@Category({CATEGORY, "Visualization"})
+	@Description("Drawing of one frame of the string visualization")
+	public static final class VisualizerSnapshotEvent extends Event {
+
+		@Label("Samples Drawn")
+		@Description("Number of samples drawn in the frame")
+		public int samples;
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         AudioSink.java            	                           ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Where the MixerEngine sends its mixed blocks           ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+/**
+ * An AudioSink receives the blocks of samples the {@link MixerEngine} mixes. The
+ * usual sink is the sound card through AudioUtils; {@link NullAudioSink} stands in
+ * for it when running headless.
+ * <p>
+ * Like SourceDataLine.write, write may block until the device has room for the
+ * samples, which is what paces the engine's music thread.
+ *
+ * @author Michael M
+ */
+public interface AudioSink {
+
+	/**
+	 * Play a block of samples (each between -1.0 and +1.0).
+	 *
+	 * @param samples The block of samples to play
+	 * @param length  How many samples from the start of the block to play
+	 */
+	void write(double[] samples, int length);
+}
@@ -13,6 +13,8 @@
  * https://algs4.cs.princeton.edu/code/edu/princeton/cs/algs4/StdAudio.java.html
  **************************************************************************** */
 
+import java.util.List;
+
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
@@ -26,6 +28,14 @@ import javax.sound.sampled.SourceDataLine;
  *  The audio format uses a sampling rate of 44,100 Hz, 16-bit, monaural.
  *
  *  <p>
+ *  By default samples are sent to the sound card in blocks of a fixed size. When the
+ *  JVM is started with {@code -Dguitarhero.adaptiveBuffer=true} the block size adapts
+ *  instead: it grows right after the line nearly runs dry and shrinks slowly while
+ *  the line never gets close to empty, settling on the lowest latency that doesn't
+ *  drop out. The decisions are made by an {@link AdaptiveBlockSize}, see
+ *  {@link #getWriteBlockBytes()} and {@link #getBlockSizeHistory()} for tuning.
+ *
+ *  <p>
  *  Based on the StdAudio class 
  *  (https://algs4.cs.princeton.edu/code/edu/princeton/cs/algs4/StdAudio.java.html)
  *  by Robert Sedgewick and Kevin Wayne.
@@ -37,10 +47,15 @@ public final class AudioUtils {
 	// The sample rate: 44,100 Hz for CD quality audio.
 	public static final int SAMPLE_RATE = 44100;
 
-	private static final int BYTES_PER_SAMPLE = 2;       // 16-bit audio
+	static final int BYTES_PER_SAMPLE = 2;       // 16-bit audio
 	private static final int BITS_PER_SAMPLE = 16;       // 16-bit audio
-	private static final double MAX_16_BIT = 32768; // 64 bits / double * 2 shorts / byte * 16 bits / sample
-	private static final int SAMPLE_BUFFER_SIZE = 4096;
+	static final double MAX_16_BIT = 32768; // 64 bits / double * 2 shorts / byte * 16 bits / sample
+	static final int SAMPLE_BUFFER_SIZE = 4096;
+
+	// the internal buffer is a fraction of the actual buffer size, this choice is arbitrary
+	// it gets divided because we can't expect the buffered data to line up exactly with when
+	// the sound card decides to push out its samples.
+	static final int BLOCK_BYTES = SAMPLE_BUFFER_SIZE * BYTES_PER_SAMPLE/3 / BYTES_PER_SAMPLE * BYTES_PER_SAMPLE;
 
 	// Variables for audio format (monaural, sigend, little endian)
 	private static final int MONO = 1;
@@ -48,8 +63,16 @@ public final class AudioUtils {
 	private static final boolean SIGNED = true;
 
 	private static SourceDataLine line;   // to play the sound
-	private static byte[] buffer;         // our internal buffer
-	private static int bufferSize = 0;    // number of samples currently in internal buffer
+	private static LineWriter writer;     // our internal buffer, sends the blocks to the line
+
+	// System property that turns on adaptive block sizing
+	public static final String ADAPTIVE_PROPERTY = "guitarhero.adaptiveBuffer";
+
+	// Adaptive mode: the line is opened larger so blocks have room to grow
+	static final int ADAPTIVE_LINE_FRAMES = SAMPLE_BUFFER_SIZE * 4;
+	static final int MIN_BLOCK_BYTES      = 64 * BYTES_PER_SAMPLE;
+
+	private static final boolean adaptive = Boolean.getBoolean(ADAPTIVE_PROPERTY);
 
 	/**
 	 * Class (static) initializer to set up audio line
@@ -61,12 +84,13 @@ public final class AudioUtils {
 			DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
 
 			line = (SourceDataLine) AudioSystem.getLine(info);
-			line.open(format, SAMPLE_BUFFER_SIZE * BYTES_PER_SAMPLE);
+			line.open(format, LineWriter.lineBytes(adaptive));
 
-			// the internal buffer is a fraction of the actual buffer size, this choice is arbitrary
-			// it gets divided because we can't expect the buffered data to line up exactly with when
-			// the sound card decides to push out its samples.
-			buffer = new byte[SAMPLE_BUFFER_SIZE * BYTES_PER_SAMPLE/3];
+			writer = new LineWriter(new LineWriter.Line() {
+				public int getBufferSize() { return line.getBufferSize(); }
+				public int available() { return line.available(); }
+				public int write(byte[] bytes, int offset, int length) { return line.write(bytes, offset, length); }
+			}, adaptive);
 		}
 		catch (LineUnavailableException e) {
 			System.out.println(e.getMessage());
@@ -84,25 +108,65 @@ public final class AudioUtils {
 	 * @throws IllegalArgumentException if the sample is {@code Double.NaN}
 	 */
 	public static void play(double sample) {
-		if (Double.isNaN(sample)) throw new IllegalArgumentException("sample is NaN");
+		writer.play(sample);
+	}
+
+	/**
+	 * Whether the adaptive block sizing is on (see {@link #ADAPTIVE_PROPERTY}).
+	 *
+	 * @return true in adaptive mode
+	 */
+	public static boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * The number of bytes currently sent to the sound card per write. Divide by 2
+	 * for samples, and by 44.1 again for milliseconds.
+	 *
+	 * @return the current block size in bytes
+	 */
+	public static int getWriteBlockBytes() {
+		return writer.getBlockBytes();
+	}
 
-		//System.out.println(sample);
+	/**
+	 * The size of the sound card line's own buffer.
+	 *
+	 * @return the line buffer size in bytes
+	 */
+	public static int getLineBufferBytes() {
+		return line.getBufferSize();
+	}
 
-		// clip if outside [-1, +1]
-		if (sample < -1.0) sample = -1.0;
-		if (sample > +1.0) sample = +1.0;
+	/**
+	 * In adaptive mode, how many writes found the line nearly empty (each one grew the block).
+	 *
+	 * @return the number of near underruns
+	 */
+	public static int getNearUnderruns() {
+		return adaptive ? writer.getController().getNearUnderruns() : 0;
+	}
 
-		// convert to bytes
-		short s = (short) (MAX_16_BIT * sample);
-		if (sample == 1.0) s = Short.MAX_VALUE;   // special case since 32768 not a short
-		buffer[bufferSize++] = (byte) s;
-		buffer[bufferSize++] = (byte) (s >> 8);   // little endian
+	/**
+	 * The most recent changes of the block size in adaptive mode, oldest first.
+	 *
+	 * @return up to the last 64 changes
+	 */
+	public static List<AdaptiveBlockSize.BlockSizeChange> getBlockSizeHistory() {
+		return writer.getHistory();
+	}
 
-		// send to sound card if buffer is full        
-		if (bufferSize >= buffer.length) {
-			line.write(buffer, 0, buffer.length);
-			bufferSize = 0;
-		}
+	/**
+	 * Writes a block of samples (each between -1.0 and +1.0) to standard audio.
+	 * Samples outside the range will be clipped.
+	 *
+	 * @param  samples the block of samples to play
+	 * @param  length how many samples from the start of the block to play
+	 * @throws IllegalArgumentException if any of the samples is {@code Double.NaN}
+	 */
+	public static void play(double[] samples, int length) {
+		writer.play(samples, length);
 	}
 
 }
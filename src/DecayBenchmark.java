@@ -0,0 +1,166 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         DecayBenchmark.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Measures the cost of GuitarString.tic right after a    ###
+ ###                pluck and after ten minutes of decay                   ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Random;
+
+/**
+ * The DecayBenchmark checks that a string costs nothing once it has died away. It
+ * times GuitarString.tic over one second of audio right after a pluck, then lets
+ * the string ring for ten minutes of audio and times it again. It also reports the
+ * slowest second of audio along the way.
+ * <p>
+ * For comparison it runs the same Karplus-Strong update on a plain array with no
+ * flush to zero, once on fresh noise and once on noise scaled down into the
+ * subnormal range (below Double.MIN_NORMAL). An unprotected string would take many
+ * minutes of audio to decay that far (its amplitude only drops by the decay factor
+ * once per period), so the benchmark starts it there instead of waiting. On many
+ * CPUs the arithmetic on subnormal doubles is several times slower, which is the
+ * cost GuitarString's SILENCE_LEVEL avoids. The largest |sample| left after the
+ * subnormal run is printed to show it stayed in that range.
+ * <p>
+ * A few rounds are run and thrown away so the JIT has compiled both loops before
+ * anything is timed.
+ * <p>
+ * Usage: java DecayBenchmark [frequency] [rounds]
+ *
+ * @author Michael M
+ */
+public final class DecayBenchmark {
+
+	// How long each timed run is, and how far into the decay the second run starts
+	private static final int TIMED_TICS   = AudioUtils.SAMPLE_RATE;
+	private static final int IDLE_SECONDS = 10 * 60;
+
+	// Scale of the noise for the unprotected run in the subnormal range
+	private static final double SUBNORMAL_SCALE = 1e-310;
+
+	// Rounds thrown away before timing
+	private static final int WARMUP_ROUNDS = 3;
+
+	// Keeps the JIT from throwing away the results
+	private static double sink;
+
+	// Not meant to be instantiated, see main
+	private DecayBenchmark() { }
+
+
+
+	/**
+	 * Entry point, prints the cost per tic for each round.
+	 *
+	 * @param args optional frequency (defaults to GuitarHero's strings) and number of rounds
+	 */
+	public static void main(String[] args) {
+		double frequency = args.length > 0 ? Double.parseDouble(args[0]) : InstrumentBank.guitarHero().frequency(0);
+		int    rounds    = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		for (int round = -WARMUP_ROUNDS; round < 0; round++) {
+			runRound(frequency, round, false); // JIT warm-up, not printed
+		}
+		System.out.println("round | GuitarString: after pluck  slowest second  after 10 min  silent "
+				+ "| unprotected: after pluck   subnormal   max |sample|");
+		for (int round = 1; round <= rounds; round++) {
+			runRound(frequency, round, true);
+		}
+	}
+
+
+
+	/**
+	 * Time one round of the protected and the unprotected string.
+	 *
+	 * @param frequency The frequency of the string
+	 * @param round     The round number, also the seed of the noise
+	 * @param print     Whether to print the results
+	 */
+	private static void runRound(double frequency, int round, boolean print) {
+		GuitarString string = new GuitarString(frequency);
+		string.pluck(new Random(round));
+		double fresh   = timeTics(string);
+		double slowest = fresh;
+		while (string.time() < (long) IDLE_SECONDS * AudioUtils.SAMPLE_RATE) {
+			slowest = Math.max(slowest, timeTics(string));
+		}
+		double idle = timeTics(string);
+
+		double[] ring   = new double[GuitarString.delayLength(frequency)];
+		Random   random = new Random(round);
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = random.nextDouble() - 0.5;
+		}
+		double rawFresh = timeRawTics(ring, 0);
+
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = (random.nextDouble() - 0.5) * SUBNORMAL_SCALE;
+		}
+		double rawSubnormal = timeRawTics(ring, 0);
+		double largest      = 0;
+		for (double x : ring) {
+			largest = Math.max(largest, Math.abs(x));
+		}
+
+		if (print) {
+			System.out.printf("%5d | %22.1f ns %12.1f ns %10.1f ns %7s | %21.1f ns %8.1f ns %14.1e%n",
+					round, fresh, slowest, idle, string.isSilent() ? "yes" : "no", rawFresh, rawSubnormal, largest);
+		}
+	}
+
+
+
+	/**
+	 * @return The average cost of TIMED_TICS tics of the string, in nanoseconds
+	 */
+	private static double timeTics(GuitarString string) {
+		long   start = System.nanoTime();
+		double sum   = 0;
+		for (int i = 0; i < TIMED_TICS; i++) {
+			sum += string.sample();
+			string.tic();
+		}
+		long elapsed = System.nanoTime() - start;
+		sink += sum;
+		return elapsed / (double) TIMED_TICS;
+	}
+
+
+
+	/**
+	 * @return The average cost of TIMED_TICS unprotected updates, in nanoseconds
+	 */
+	private static double timeRawTics(double[] ring, long position) {
+		long start = System.nanoTime();
+		rawTics(ring, position, TIMED_TICS);
+		return (System.nanoTime() - start) / (double) TIMED_TICS;
+	}
+
+
+
+	/**
+	 * The Karplus-Strong update on a ring buffer, without flushing small values to zero.
+	 */
+	private static void rawTics(double[] ring, long position, int tics) {
+		int    n   = ring.length;
+		int    pos = (int) (position % n);
+		double sum = 0;
+		for (int i = 0; i < tics; i++) {
+			int next = pos + 1 == n ? 0 : pos + 1;
+			sum += ring[pos];
+			ring[pos] = GuitarString.ENGERGY_DECAY_FACTOR * ((ring[pos] + ring[next]) / 2);
+			pos = next;
+		}
+		sink += sum;
+	}
+}
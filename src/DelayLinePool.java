@@ -0,0 +1,246 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         DelayLinePool.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Reuses the delay lines of guitar strings that have     ###
+ ###                died away                                              ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A DelayLinePool hands out the delay lines (ring buffers of displacements) for guitar
+ * strings of one length. A string created by an {@link InstrumentBank} takes its delay
+ * line from the pool when it is plucked and gives it back once it has come to rest,
+ * so only the strings that are actually sounding hold one, and a new array is only
+ * created when more strings of this length sound at once than ever before.
+ * <p>
+ * Every string using the pool registers itself when it is created, which sizes the
+ * pool's free list for all of them up front: giving a delay line back never allocates.
+ * Plucks happen on the music thread, so acquire never creates a delay line: the pool
+ * keeps a few spare ones ready (see keepSpare), and whenever acquire dips into them a
+ * background thread creates new ones to top the pool back up. If more strings are
+ * plucked at once than there are spares, acquire comes back empty-handed and the
+ * string has to wait for the background thread (see getShortfalls).
+ *
+ * @author Michael M
+ */
+public final class DelayLinePool {
+
+	// Free delay lines a pool keeps ready unless told otherwise
+	public static final int DEFAULT_SPARE = 1;
+
+	// Every pool, and the thread that tops up their spares
+	private static final List<DelayLinePool> POOLS    = new CopyOnWriteArrayList<>();
+	private static final Thread              REFILLER = new Thread(DelayLinePool::refillPools, "delay-line-refill");
+
+	static {
+		REFILLER.setDaemon(true);
+		REFILLER.start();
+	}
+
+	// The length of every delay line in this pool
+	private final int length;
+
+	// Delay lines not in use, free[0] to free[numFree - 1]. It has room for a delay line
+	// per registered string, every delay line this pool could ever have out at once
+	private double[][] free = new double[0][];
+	private int        numFree;
+
+	// How many strings use this pool
+	private int registered;
+
+	// How many delay lines this pool holds (free, in use or being created), how many
+	// should be free at all times, and how often acquire found none free
+	private int allocated;
+	private int spare = DEFAULT_SPARE;
+	private int shortfalls;
+
+
+
+	/**
+	 * Create an empty pool.
+	 *
+	 * @param length The length of the delay lines
+	 * @throws IllegalArgumentException if the length isn't positive
+	 */
+	public DelayLinePool(int length) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("Error - " + "a delay line needs at least one sample, got " + length);
+		}
+		this.length = length;
+		POOLS.add(this);
+	}
+
+
+
+	/**
+	 * Count one more string that takes its delay lines from this pool, making room for
+	 * its delay line in the pool. Called when the string is created, not while playing.
+	 */
+	public synchronized void register() {
+		registered++;
+		if (free.length < registered) {
+			free = Arrays.copyOf(free, Math.max(registered, free.length * 2));
+		}
+	}
+
+
+
+	/**
+	 * Keep spare delay lines ready for the next plucks, creating them now. The spares
+	 * bound how many strings can start sounding before the background thread wakes up,
+	 * not how many can sound at once, and the pool never holds more delay lines than it
+	 * has registered strings.
+	 *
+	 * @param count How many delay lines to keep free
+	 * @throws IllegalArgumentException if count is negative
+	 */
+	public void keepSpare(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Error - " + "can't keep " + count + " spare delay lines");
+		}
+		synchronized (this) {
+			spare = count;
+		}
+		refill();
+	}
+
+
+
+	/**
+	 * Take a free delay line from the pool, and have the background thread replace it.
+	 * The contents are whatever its last string left in it.
+	 *
+	 * @return A delay line of this pool's length, or null if none is free yet
+	 */
+	public synchronized double[] acquire() {
+		LockSupport.unpark(REFILLER);
+		if (numFree == 0) {
+			shortfalls++;
+			return null;
+		}
+		double[] line = free[--numFree];
+		free[numFree] = null;
+		return line;
+	}
+
+
+
+	/**
+	 * Give a delay line back to the pool.
+	 *
+	 * @param line A delay line that was taken from this pool and is no longer used
+	 * @throws IllegalArgumentException if the delay line is the wrong length
+	 * @throws IllegalStateException if more delay lines come back than strings are registered
+	 */
+	public synchronized void release(double[] line) {
+		if (line.length != length) {
+			throw new IllegalArgumentException("Error - " + "delay line of " + line.length
+					+ " samples doesn't belong in a pool of " + length);
+		}
+		if (numFree == free.length) {
+			throw new IllegalStateException("Error - " + "more delay lines released than the "
+					+ registered + " registered strings can hold");
+		}
+		free[numFree++] = line;
+	}
+
+
+
+	/**
+	 * Create delay lines until spare of them are free, outside the lock so acquire
+	 * never waits for the allocation.
+	 */
+	private void refill() {
+		int count;
+		synchronized (this) {
+			count = Math.min(spare - numFree, registered - allocated);
+			if (count <= 0) {
+				return;
+			}
+			allocated += count;
+		}
+
+		double[][] lines = new double[count][];
+		for (int i = 0; i < count; i++) {
+			lines[i] = new double[length];
+		}
+
+		synchronized (this) {
+			for (double[] line : lines) {
+				free[numFree++] = line;
+			}
+		}
+	}
+
+
+
+	/**
+	 * The background thread: wait for acquire to take a spare, then top up every pool.
+	 */
+	private static void refillPools() {
+		while (true) {
+			LockSupport.park();
+			for (DelayLinePool pool : POOLS) {
+				pool.refill();
+			}
+		}
+	}
+
+
+
+	/**
+	 * @return The length of the delay lines in this pool
+	 */
+	public int getLength() {
+		return length;
+	}
+
+
+
+	/**
+	 * @return How many delay lines this pool holds, free or in use
+	 */
+	public synchronized int getAllocated() {
+		return allocated;
+	}
+
+
+
+	/**
+	 * @return How many strings use this pool
+	 */
+	public synchronized int getRegistered() {
+		return registered;
+	}
+
+
+
+	/**
+	 * @return How many delay lines are waiting in the pool
+	 */
+	public synchronized int getFree() {
+		return numFree;
+	}
+
+
+
+	/**
+	 * @return How many times acquire found no free delay line
+	 */
+	public synchronized int getShortfalls() {
+		return shortfalls;
+	}
+}
@@ -24,6 +24,12 @@ import java.util.NoSuchElementException;
  * a linked-list instead since the implementation is simpler. Re-implementing this
  * as a ring buffer would be a great exercise if you want to push yourself - if so,
  * see the course slides as a reference.
+ * <p>
+ * GuitarString now keeps its samples in exactly such a ring buffer of primitive
+ * doubles, so nothing in the application uses this class any more. It is kept as
+ * the general-purpose queue of the original assignment (the README's Karplus-Strong
+ * description is written in terms of it) and for other code that wants a bounded
+ * FIFO of objects.
  *
  * @param <T> The type of object that the FixedSizeQueue will hold
  * @author Michael M
@@ -14,6 +14,8 @@
  #############################################################################
  */
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -39,27 +41,43 @@ import javafx.util.Pair;
  */
 public class GuitarHero extends Application {
 
-	// Queue of keys the user types
-	private static LinkedList<KeyCode> keysTyped = new LinkedList<KeyCode>();
-	private static Object              keyLock   = new Object(); // Used for concurrency protection
-
 	// Application width and height, feel free to modify
 	public static final int WIDTH  = 600;
 	public static final int HEIGHT = 400;
 
 	// The A440 concert pitch reference note (https://en.wikipedia.org/wiki/Concert_pitch)
-	public static final double CONCERT_A = 440.0;
+	public static final double CONCERT_A = InstrumentBank.CONCERT_A;
 
 	// The keys the user can press to "play" the guitar/piano
-	public static final String KEYBOARD = "q2we4r5ty7u8i9op-[=zxdcfvgbnjmk,.;/' ".toUpperCase();
+	public static final String KEYBOARD = InstrumentBank.GUITAR_HERO_KEYBOARD;
+
+	// Free delay lines kept ready for the next plucks, so the music thread doesn't create them
+	public static final int SPARE_DELAY_LINES = 4;
+
+	// Pass this on the command line to play pre-rendered notes instead of simulating strings
+	public static final String WAVETABLE_OPTION = "--wavetable";
+
+	// Seed for the pre-rendered plucks in wavetable mode, and where they are cached
+	public static final long   WAVETABLE_SEED = 2021;
+	public static final String CACHE_DIR      = "guitarhero-notes";
+
+	// Pass --listen=udp:PORT (or tcp:PORT) to also take key presses from remote
+	// controllers, held back --jitterMillis=N to smooth out the network (see NetworkKeySource)
+	public static final String LISTEN_OPTION         = "listen";
+	public static final String JITTER_OPTION         = "jitterMillis";
+	public static final String DEFAULT_JITTER_MILLIS = "20";
 
 	// How many "dots" to use in the guitar string visualization
-	public static final int                    NUM_TO_VISUALIZE = 100;
-	private             FixedSizeQueue<Double> samples;                         // A queue of samples to visualize
-	private static      Object                 samplesLock      = new Object(); // Used for concurrency protection
-	public static final int                    X_MARGIN         = 50;           // Horizontal padding for the visualization
-	public static final int                    DOT_RADIUS       = 5;            // How big the dots should be in the visualization
+	public static final int      NUM_TO_VISUALIZE = 100;
+	private             double[] samples;       // The most recent samples, to visualize
+	public static final int      X_MARGIN         = 50; // Horizontal padding for the visualization
+	public static final int      DOT_RADIUS       = 5;  // How big the dots should be in the visualization
+
+	// This player's strings and key input inside the shared mixer engine
+	private MixerSession session;
 
+	// Remote key input, or null if not listening
+	private NetworkKeySource networkInput;
 
 
 	/**
@@ -82,35 +100,44 @@ public class GuitarHero extends Application {
 	@Override
 	public void start(Stage stage) throws Exception {
 
-		// Initialize a queue of samples for the visualization of a guitar string
-		samples = new FixedSizeQueue<Double>(NUM_TO_VISUALIZE);
-		for (int i = 0; i < NUM_TO_VISUALIZE; i++) {
-			samples.enqueue(0.0);
+		// Initialize an array of samples for the visualization of a guitar string
+		samples = new double[NUM_TO_VISUALIZE];
+
+		// Look up the tuning of every key the user can pluck with the keyboard (i.e.,
+		// each character in the KEYBOARD String; there are 37 characters). The table is
+		// shared, and a string only holds a delay line while it sounds.
+		// A few spare delay lines are kept ready, so plucking doesn't create one.
+		//    -If you want, you can experiment with a different sound by using
+		//     InstrumentBank.EQUAL_TEMPERAMENT instead, where the ith string sounds
+		//     at 440 * 2^((i - 24)/12) Hz; or try experimenting with your own
+		//     InstrumentBank.Tuning to create other "instruments"
+		//
+		InstrumentBank bank = InstrumentBank.get(KEYBOARD, CONCERT_A, InstrumentBank.GUITAR_HERO);
+
+		// Hand the strings to the mixer engine, which owns the audio output and
+		// plays this session alongside any others in the process. In wavetable mode
+		// each note's decay is rendered once into a cache file in the temp directory
+		// and reused on later runs.
+		if (getParameters().getRaw().contains(WAVETABLE_OPTION)) {
+			Path      cacheDir = Paths.get(System.getProperty("java.io.tmpdir"), CACHE_DIR);
+			NoteCache cache    = NoteCache.open(cacheDir, bank.getFrequencies(), WAVETABLE_SEED);
+			session = new MixerSession(KEYBOARD, cache, NUM_TO_VISUALIZE);
+		} else {
+			session = new MixerSession(KEYBOARD, bank.newStrings(), NUM_TO_VISUALIZE);
+			bank.keepSpare(SPARE_DELAY_LINES);
 		}
-
-		// Create two guitar strings, for concert A and C
-		double       CONCERT_C = CONCERT_A * Math.pow(2, 3.0 / 12.0);
-		GuitarString stringA   = new GuitarString(CONCERT_A);
-		GuitarString stringC   = new GuitarString(CONCERT_C);
-
-		// Create an array for each string the user can pluck with the keyboard
-		// (i.e., each character in the KEYBOARD String; there are 37 characters)
-		// and then initialize that array such that the ith string has a frequency
-		// of 440 * 1.05956^(i - 24). 
-		//    -If you want, you can experiment with a different
-		//     sound by instead initializing such that the ith string 
-		//     has a frequency of 44,100 * 2^((22-i)/12.0) / 440; or try
-		//     experimenting with your own values to create other "instruments"
-		//  
-		HashMap<Character, GuitarString> guitarStringSet = new HashMap<>(37);
-		for (int i = 0; i < KEYBOARD.length(); i++) {
-
-
-			double freq = 44100 * Math.pow(2, (22 - 1) / 12.0) / 440;
-			//			double freq = Math.pow(2, (22 - 1)/12.0);
-			//			double freq = 44100 * Math.pow(2, ((22 - i)/12.0));
-			//			double freq = Math.pow(1.05956, (22 - i)/12.0);
-			guitarStringSet.put(KEYBOARD.charAt(i), new GuitarString(freq));
+		MixerEngine.shared().addSession(session);
+
+		Map<String, String> named  = getParameters().getNamed();
+		String              listen = named.get(LISTEN_OPTION);
+		if (listen != null) {
+			int colon = listen.indexOf(':');
+			if (colon < 0) {
+				throw new IllegalArgumentException("Error - " + "expected --" + LISTEN_OPTION + "=udp:PORT or tcp:PORT, got " + listen);
+			}
+			double jitterMillis = Double.parseDouble(named.getOrDefault(JITTER_OPTION, DEFAULT_JITTER_MILLIS));
+			networkInput = new NetworkKeySource(listen.substring(0, colon), Integer.parseInt(listen.substring(colon + 1)),
+					MixerEngine.shared(), session, jitterMillis);
 		}
 
 		// Set up the JavaFX stage, scene, and drawing canvas
@@ -119,11 +146,13 @@ public class GuitarHero extends Application {
 		Group root  = new Group();
 		Scene scene = new Scene(root, WIDTH, HEIGHT);
 
-		// Whenever the user types a key, add it to a queue of keys that have been
-		// typed for later code to deal with
+		// Whenever the user types a key, add it to the session's queue of keys that
+		// have been typed for the music thread to deal with (keys that aren't in
+		// KEYBOARD are ignored there)
 		scene.addEventHandler(KeyEvent.KEY_PRESSED, (key) -> {
-			synchronized (keyLock) {
-				keysTyped.addFirst(key.getCode());
+			String typed = key.getCode().getChar();
+			if (!typed.isEmpty()) {
+				session.keyTyped(typed.charAt(0));
 			}
 		});
 
@@ -141,6 +170,9 @@ public class GuitarHero extends Application {
 
 			@Override
 			public void handle(long timestamp) {
+				AudioEvents.VisualizerSnapshotEvent event =
+						AudioEvents.begin(AudioEvents.VISUALIZER_SNAPSHOT, AudioEvents.VisualizerSnapshotEvent::new);
+
 				gc.clearRect(0, 0, WIDTH, HEIGHT);    // Clear the drawing
 				gc.setFill(Color.FORESTGREEN);              // Use green dots for the visualization
 
@@ -149,103 +181,34 @@ public class GuitarHero extends Application {
 				int    dotDrawingRange     = WIDTH - X_MARGIN * 2;
 				double spaceBetweenDots    = dotDrawingRange / NUM_TO_VISUALIZE;
 				int    verticalScaleFactor = 50;        // Used to make the vibrations more visible
-				synchronized (samplesLock) {
-					for (Double sample : samples) {
-						gc.fillOval(X_MARGIN + numDot * spaceBetweenDots,
-								HEIGHT / 2 + sample * verticalScaleFactor,
-								DOT_RADIUS, DOT_RADIUS);
-						numDot++;
-					}
+				int    numSamples          = session.copyRecentSamples(samples);
+				for (int i = 0; i < numSamples; i++) {
+					gc.fillOval(X_MARGIN + numDot * spaceBetweenDots,
+							HEIGHT / 2 + samples[i] * verticalScaleFactor,
+							DOT_RADIUS, DOT_RADIUS);
+					numDot++;
 				}
-			}
-		};
-		animator.start();
 
-		// Create a new thread for user input through the keyboard to "pluck" various
-		// guitar strings
-		Thread musicThread = new Thread() {
-			public void run() {
-
-				while (true) {
-
-					// If the user has typed a key, pluck the appropriate guitar string
-					if (hasNextKeyTyped()) {
-						KeyCode key = nextKeyTyped();
-
-						// Check if the key the user typed is one of the keys
-						// specified in the KEYBOARD String (note: use key.getChar() 
-						// to get the char value of the key the user pressed and the
-						// String indexOf function to find out if the key the user
-						// pressed was one of the ones specified in KEYBOARD)
-						for (Character i : KEYBOARD.toCharArray()) {
-							if (key.getChar().charAt(0) == i) {
-								guitarStringSet.get(i).pluck();
-							}
-						}
-
-						// If the key was one of the ones specified in KEYBOARD,
-						// pluck the appropriate guitar string from your array of
-						// guitar strings
-
-					}
-
-					// Compute the superposition of the samples from all guitar strings
-					// (i.e., add the value returned by a call to the sample() method from
-					// all the guitar strings in your array)
-					double sample = 0;
-					for (GuitarString i : guitarStringSet.values()) {
-						sample += i.sample();
-					}
-
-					// send the result to audio
-					AudioUtils.play(sample);
-
-					// update visualization
-					synchronized (samplesLock) {
-						samples.dequeue();
-						samples.enqueue(sample);
-					}
-
-					// Advance the simulation of each guitar string by one step
-					// (i.e., call the tic() method on all guitar strings in your array)
-					for (GuitarString i : guitarStringSet.values()) {
-						i.tic();
-					}
+				if (AudioEvents.end(event)) {
+					event.samples = numDot;
+					event.commit();
 				}
 			}
 		};
-		musicThread.setDaemon(true); // Ensure the thread dies when we exit the main application
-		musicThread.start();
-	}
-
-
-
-	/**
-	 * Checks if the user has typed a key that we haven't dealt with yet
-	 *
-	 * @return true if there are keys remaining in the queue of typed keys, false otherwise
-	 */
-	public static boolean hasNextKeyTyped() {
-		synchronized (keyLock) {
-			return !keysTyped.isEmpty();
-		}
+		animator.start();
 	}
 
 
 
 	/**
-	 * Get the next key that the user has typed
-	 *
-	 * @return The KeyCode of the next key in the queue of keys that the user has typed
-	 * @throws NoSuchElementException if the queue of typed keys is empty
+	 * Called when the application exits, stops listening for remote keys and takes this player out of the shared mix.
 	 */
-	public static KeyCode nextKeyTyped() {
-		synchronized (keyLock) {
-			if (keysTyped.isEmpty()) {
-				throw new NoSuchElementException("Error - your program has already processed all keystrokes");
-			}
-			return keysTyped.remove(keysTyped.size() - 1);
+	@Override
+	public void stop() throws Exception {
+		if (networkInput != null) {
+			networkInput.close();
 		}
+		MixerEngine.shared().removeSession(session);
 	}
 
 
@@ -12,8 +12,6 @@
  ### Credits:                                                              ###
  #############################################################################
  */
-import java.util.LinkedList;
-import java.util.NoSuchElementException;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.scene.Group;
@@ -27,9 +25,9 @@ import javafx.stage.Stage;
 
 /**
  * The GuitarLite class is an application that tests your implementation of
- * FixedSizeQueue and GuitarString. It creates a JavaFX application
+ * GuitarString. It creates a JavaFX application
  * that simulates plucking two guitar strings (A and C) using the 
- * Karplus-Strong algorithm. If everything in FixedSizeQueue and GuitarString
+ * Karplus-Strong algorithm. If everything in GuitarString
  * is implemented correctly, the user will be able to press A and C on the keyboard
  * to "strum" an A and C guitar string.
  * 
@@ -37,24 +35,28 @@ import javafx.stage.Stage;
  */
 public class GuitarLite extends Application {
 	
-	// Queue of keys the user types
-	private static LinkedList<KeyCode> keysTyped = new LinkedList<KeyCode>();
-	private static Object keyLock = new Object(); // Used for concurrency protection
-
 	// Application width and height, feel free to modify
 	public static final int WIDTH = 600;
 	public static final int HEIGHT = 400;
 
 	// The A440 concert pitch reference note (https://en.wikipedia.org/wiki/Concert_pitch)
-	public static final double CONCERT_A = 440.0; 
+	public static final double CONCERT_A = InstrumentBank.CONCERT_A; 
 
 	// How many "dots" to use in the guitar string visualization
 	public static final int NUM_TO_VISUALIZE = 100;
-	private FixedSizeQueue<Double> samples; // A queue of samples to visualize
-	private static Object samplesLock = new Object(); // Used for concurrency protection
+	private double[] samples; // The most recent samples, to visualize
 	public static final int X_MARGIN = 50; // Horizontal padding for the visualization
 	public static final int DOT_RADIUS = 5; // How big the dots should be in the visualization
 
+	// Pressing A or C plucks the strings GuitarLite always had: their delay lines are as
+	// many samples long as concert A and the C a minor third above it are in Hz, so they
+	// sound at about 100 Hz and 84 Hz.
+	public static final String KEYBOARD = "AC";
+	public static final InstrumentBank.Tuning TUNING = (key, concertA) -> AudioUtils.SAMPLE_RATE / (concertA * Math.pow(2, 3.0 * key / 12.0));
+
+	// The A and C strings and key input inside the shared mixer engine
+	private MixerSession session;
+
 	/**
 	 * Entry point to the program, simply calls launch to start the JavaFX
 	 * application.
@@ -73,16 +75,13 @@ public class GuitarLite extends Application {
 	@Override
 	public void start(Stage stage) throws Exception {
 		
-		// Initialize a queue of samples for the visualization of a guitar string
-		samples = new FixedSizeQueue<Double>(NUM_TO_VISUALIZE);
-		for (int i = 0; i < NUM_TO_VISUALIZE; i++) {
-			samples.enqueue(0.0);
-		}
+		// Initialize an array of samples for the visualization of a guitar string
+		samples = new double[NUM_TO_VISUALIZE];
 
-		// Create two guitar strings, for concert A and C
-		double CONCERT_C = CONCERT_A * Math.pow(2, 3.0/12.0);
-		GuitarString stringA = new GuitarString(CONCERT_A);
-		GuitarString stringC = new GuitarString(CONCERT_C);
+		// Create two guitar strings, for concert A and C, from the shared tuning table
+		InstrumentBank bank = InstrumentBank.get(KEYBOARD, CONCERT_A, TUNING);
+		session = new MixerSession(KEYBOARD, bank.newStrings(), NUM_TO_VISUALIZE);
+		MixerEngine.shared().addSession(session);
 
 		// Set up the JavaFX stage, scene, and drawing canvas
 		stage.setTitle("Guitar Simulation with JavaFX");
@@ -93,9 +92,8 @@ public class GuitarLite extends Application {
 		// Whenever the user types a key, add it to a queue of keys that have been
 		// typed for later code to deal with
 		scene.addEventHandler(KeyEvent.KEY_PRESSED, (key) -> {
-			synchronized (keyLock) {
-				keysTyped.addFirst(key.getCode());
-			}
+			if (key.getCode() == KeyCode.A) { session.keyTyped('A'); }
+			if (key.getCode() == KeyCode.C) { session.keyTyped('C'); }
 		});
 
 		Canvas canvas = new Canvas(WIDTH, HEIGHT);
@@ -120,78 +118,23 @@ public class GuitarLite extends Application {
 				int dotDrawingRange = WIDTH - X_MARGIN * 2;
 				double spaceBetweenDots = dotDrawingRange / NUM_TO_VISUALIZE;
 				int verticalScaleFactor = 50; // Used to make the vibrations more visible
-				synchronized (samplesLock) {
-					for (Double sample : samples) {
-						gc.fillOval(X_MARGIN + numDot * spaceBetweenDots, 
-								    HEIGHT/2 + sample * verticalScaleFactor, 
-								    DOT_RADIUS, DOT_RADIUS);
-						numDot++;
-					}
+				int numSamples = session.copyRecentSamples(samples);
+				for (int i = 0; i < numSamples; i++) {
+					gc.fillOval(X_MARGIN + numDot * spaceBetweenDots, 
+							    HEIGHT/2 + samples[i] * verticalScaleFactor, 
+							    DOT_RADIUS, DOT_RADIUS);
+					numDot++;
 				}
 			}
 		};
 		animator.start();
-
-		// Create a new thread for user input through the keyboard to "pluck" various
-		// guitar strings
-		Thread musicThread = new Thread() {
-			public void run() {
-
-				while (true) {
-					
-					// If the user has typed a key, pluck the appropriate guitar string
-					if (hasNextKeyTyped()) {
-						KeyCode key = nextKeyTyped();
-						if (key == KeyCode.A) { stringA.pluck(); }
-						if (key == KeyCode.C) { stringC.pluck(); }
-					}
-
-					// compute the superposition of the samples from all guitar strings
-					double sample = stringA.sample() + stringC.sample();
-
-					// send the result to audio
-					AudioUtils.play(sample);
-
-					// update visualization
-					synchronized (samplesLock) {
-						try {
-							samples.dequeue();
-						} catch(NoSuchElementException e) { /* ignore for now */ }
-						samples.enqueue(sample);
-					}
-
-					// advance the simulation of each guitar string by one step
-					stringA.tic();
-					stringC.tic();
-				}
-			}
-		};
-		musicThread.setDaemon(true); // Ensure the thread dies when we exit the main application
-		musicThread.start();
 	}
 
 	/**
-	 * Checks if the user has typed a key that we haven't dealt with yet
-	 * @return true if there are keys remaining in the queue of typed keys, false otherwise
+	 * Called when the application exits, takes the A and C strings out of the shared mix.
 	 */
-	public static boolean hasNextKeyTyped() {
-		synchronized (keyLock) {
-			return !keysTyped.isEmpty();
-		}
-	}
-
-	/**
-	 * Get the next key that the user has typed
-	 * 
-	 * @throws NoSuchElementException if the queue of typed keys is empty
-	 * @return The KeyCode of the next key in the queue of keys that the user has typed
-	 */
-	public static KeyCode nextKeyTyped() {
-		synchronized (keyLock) {
-			if (keysTyped.isEmpty()) {
-				throw new NoSuchElementException("Error - your program has already processed all keystrokes");
-			}
-			return keysTyped.remove(keysTyped.size() - 1);
-		}
+	@Override
+	public void stop() throws Exception {
+		MixerEngine.shared().removeSession(session);
 	}
 }
@@ -15,7 +15,8 @@
  */
 
 
-import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class represents a single guitar string or piano wire, which is simulated using
@@ -30,6 +31,10 @@ import java.util.Iterator;
  * (a real number between -1/2 and +1/2) at N equally spaced points (in time),
  * where N equals the sampling rate (44,100) divided by the fundamental frequency
  * (rounding the quotient up to the nearest integer)
+ * <p>
+ * A string created with a {@link DelayLinePool} only holds its queue while it is
+ * sounding: the queue is taken from the pool on pluck and given back once the
+ * string has come to rest (see {@link InstrumentBank}).
  *
  * @author Michael M
  */
@@ -38,12 +43,33 @@ public class GuitarString {
 	// Karplus-Strong energy decay factor
 	public static final double ENGERGY_DECAY_FACTOR = 0.994;
 
-	// Queue to hold the displacement values at equally-spaced points along the guitar string
-	private FixedSizeQueue<Double> queue;
+	// Displacements smaller than this are flushed to zero. Without it the decay keeps
+	// multiplying by ENGERGY_DECAY_FACTOR forever and the samples end up as subnormal
+	// doubles, which can make every tic many times slower once nothing is audible.
+	// It is well below the smallest step of 16-bit audio (1 / 32768).
+	public static final double SILENCE_LEVEL = 1e-6;
+
+	// Queue to hold the displacement values at equally-spaced points along the guitar string.
+	// It is always full, so it is kept as a ring buffer of primitive doubles: the front of
+	// the queue is at head, and the back is the slot just before it. Unlike a
+	// FixedSizeQueue<Double> nothing is boxed or allocated per tic. With a pool the
+	// queue is null while the string is silent.
+	private       double[]      queue;
+	private       int           head;
+	private final int           delayLength;
+	private final DelayLinePool pool;
 
 	// Number of time steps that have been simulated
 	private int numTics;
 
+	// The frequency this string was created with (kept for profiling)
+	private final double frequency;
+
+	// Number of tics in a row that produced a flushed (zero) sample, once this reaches
+	// the length of the queue the whole string is at rest and tic can skip the simulation
+	private int     quietTics;
+	private boolean silent = true;
+
 
 
 	/**
@@ -61,14 +87,46 @@ public class GuitarString {
 	 * @param frequency The frequency for the guitar string
 	 */
 	public GuitarString(double frequency) {
-//		int N = (int) Math.ceil(440 / frequency);
-		int N = (int) Math.ceil(frequency);
+		int N = delayLength(frequency);
+
+		this.frequency = frequency;
+		this.delayLength = N;
+		this.pool = null;
+		queue = new double[N]; // a new array is all zeros, a string at rest
+	}
+
 
-		queue = new FixedSizeQueue<>(N);
 
-		for (int i = 0; i < N; i++) {
-			queue.enqueue(0.0);
+	/**
+	 * Create a guitar string that borrows its queue from a pool while it sounds,
+	 * instead of holding one for its whole life.
+	 *
+	 * @param frequency The frequency for the guitar string
+	 * @param pool      Where the queue comes from, must hold delay lines of delayLength(frequency)
+	 * @throws IllegalArgumentException if the pool's delay lines are the wrong length
+	 */
+	public GuitarString(double frequency, DelayLinePool pool) {
+		if (pool.getLength() != delayLength(frequency)) {
+			throw new IllegalArgumentException("Error - " + "a string of frequency " + frequency + " needs delay lines of "
+					+ delayLength(frequency) + " samples, the pool holds " + pool.getLength());
 		}
+		this.frequency = frequency;
+		this.delayLength = pool.getLength();
+		this.pool = pool;
+		pool.register();
+	}
+
+
+
+	/**
+	 * The length of the queue (N) for a string of a certain frequency.
+	 *
+	 * @param frequency The frequency for the guitar string, in Hz
+	 * @return The number of samples in the string's queue
+	 */
+	public static int delayLength(double frequency) {
+//		int N = (int) Math.ceil(440 / frequency);
+		return (int) Math.ceil(AudioUtils.SAMPLE_RATE / frequency);
 	}
 
 
@@ -80,15 +138,50 @@ public class GuitarString {
 	 * Set the queue to white noise by replacing all N items in the queue with N random
 	 * values between -0.5 and +0.5
 	 * <p>
+	 *
+	 * @return true, or false if the string's pool had no delay line free, see pluck(Random)
 	 */
-	public void pluck() {
+	public boolean pluck() {
+		return pluck(ThreadLocalRandom.current());
+	}
+
+
+
+	/**
+	 * Simulates plucking a guitar string, drawing the white noise from the given
+	 * random number generator. Plucking with a generator seeded the same way always
+	 * produces the same sound, which makes offline renders reproducible.
+	 *
+	 * @param random The source of the white noise excitation
+	 * @return true if the string was plucked, false if it is pooled, silent, and its pool
+	 *         had no delay line free (the pool is making one, pluck again a little later)
+	 */
+	public boolean pluck(Random random) {
+		if (queue == null) {
+			queue = pool.acquire();
+			if (queue == null) {
+				return false;
+			}
+		}
+
+		AudioEvents.PluckEvent event = AudioEvents.begin(AudioEvents.PLUCK, AudioEvents.PluckEvent::new);
+
 		double LOWER = -0.5;
 		double UPPER =  0.5;
-		for (int i = 0; i < queue.size(); i++) {
-			queue.dequeue();
+		for (int i = 0; i < queue.length; i++) {
 //			queue.enqueue(-0.5 + Math.random() * (0.5 - (-0.5)));
-			queue.enqueue(Math.random() * (UPPER - LOWER) + LOWER);
+			queue[i] = random.nextDouble() * (UPPER - LOWER) + LOWER;
+		}
+		head = 0;
+		quietTics = 0;
+		silent = false;
+
+		if (AudioEvents.end(event)) {
+			event.frequency = frequency;
+			event.delayLength = delayLength;
+			event.commit();
 		}
+		return true;
 	}
 
 
@@ -104,17 +197,38 @@ public class GuitarString {
 	 * multiplied by the energy decay factor.
 	 * <p>
 	 * 3. Update numTics
+	 * <p>
+	 * New samples quieter than SILENCE_LEVEL are flushed to zero, and once a whole
+	 * string's worth of them has gone by the string is silent and stops simulating
+	 * until it is plucked again. A pooled string gives its queue back at that point.
 	 */
 	public void tic() {
+		numTics++;
+		if (silent) {
+			return;
+		}
+
 		double temp;
 
-		temp = queue.dequeue();
-		double indat = ENGERGY_DECAY_FACTOR * ((temp + queue.peek()) / 2);
+		// Dequeue the front, the back of a full ring is the slot the front just left
+		temp = queue[head];
+		int next = head + 1 == queue.length ? 0 : head + 1;
+		double indat = ENGERGY_DECAY_FACTOR * ((temp + queue[next]) / 2);
 		//		queue.enqueue(((temp + queue.peek()) / 2) * ENGERGY_DECAY_FACTOR);
 		//		double indat = ENGERGY_DECAY_FACTOR * (0.5 * (temp + queue.peek()));
-		queue.enqueue(indat);
+		if (Math.abs(indat) < SILENCE_LEVEL) {
+			indat = 0.0;
+			silent = ++quietTics >= queue.length;
+		} else {
+			quietTics = 0;
+		}
+		queue[head] = indat;
+		head = next;
 
-		numTics++;
+		if (silent && pool != null) {
+			pool.release(queue);
+			queue = null;
+		}
 	}
 
 
@@ -127,7 +241,20 @@ public class GuitarString {
 	 */
 	public double sample() {
 //		if (queue.isEmpty()) { return 0.0; }
-		return queue.peek();
+		if (silent) { return 0.0; }
+		return queue[head];
+	}
+
+
+
+	/**
+	 * Check whether the string has come to rest (it hasn't been plucked yet, or its
+	 * vibration has decayed below SILENCE_LEVEL everywhere along the string).
+	 *
+	 * @return true if the string is silent until it is plucked again
+	 */
+	public boolean isSilent() {
+		return silent;
 	}
 
 
@@ -0,0 +1,243 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         InstrumentBank.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Shared tuning table of a keyboard, and lazily          ###
+ ###                allocated strings to play it with                      ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An InstrumentBank is a keyboard and its tuning: the frequency and delay length of the
+ * string behind every key, worked out once from the concert pitch and a tuning formula.
+ * Banks are shared, asking for the same keyboard, concert pitch and tuning again (see
+ * get) returns the same bank, and the table never changes once it is built.
+ * <p>
+ * The strings made by newStrings don't hold a delay line until they are plucked.
+ * Every delay length in the bank has one {@link DelayLinePool} that all of the bank's
+ * strings share, so a string takes its delay line when it is plucked and gives it back
+ * when it has died away. Memory grows with the number of notes sounding at once, not
+ * with the size of the keyboard or the number of players. The music thread never
+ * creates a delay line, see keepSpare.
+ *
+ * @author Michael M
+ */
+public final class InstrumentBank {
+
+	// The A440 concert pitch reference note (https://en.wikipedia.org/wiki/Concert_pitch)
+	public static final double CONCERT_A = 440.0;
+
+	// The keys the user can press to "play" the guitar/piano in GuitarHero
+	public static final String GUITAR_HERO_KEYBOARD = "q2we4r5ty7u8i9op-[=zxdcfvgbnjmk,.;/' ".toUpperCase();
+
+	/**
+	 * A tuning formula: the frequency of each key's string, in Hz. The string's delay
+	 * line is 44,100 divided by it, rounded up (see GuitarString.delayLength), so the
+	 * key sounds at 44,100 divided by that length.
+	 */
+	public interface Tuning {
+
+		/**
+		 * @param key      The position of the key on the keyboard
+		 * @param concertA The concert pitch
+		 * @return The frequency of the key's string, in Hz
+		 */
+		double frequency(int key, double concertA);
+	}
+
+	// GuitarHero's sound: every key gets 440 / 2^(21/12), about 130.8 Hz (a 338 sample delay line)
+	public static final Tuning GUITAR_HERO = (key, concertA) -> concertA / Math.pow(2, (22 - 1) / 12.0);
+
+	// Equal temperament around concert A: the ith key sounds 440 * 2^((i - 24)/12) Hz, up to
+	// the rounding of the delay line (the 25th key is concert A), higher keys sound higher
+	public static final Tuning EQUAL_TEMPERAMENT = (key, concertA) -> concertA * Math.pow(2, (key - 24) / 12.0);
+
+	// Every bank built so far, by tuning then by concert pitch and keyboard
+	private static final HashMap<Tuning, HashMap<String, InstrumentBank>> banks = new HashMap<>();
+
+	// The table, one entry per key
+	private final String          keyboard;
+	private final double[]        frequencies;
+	private final int[]           delayLengths;
+	private final DelayLinePool[] pools;         // shared by keys with the same delay length
+	private final DelayLinePool[] distinctPools; // each pool once
+
+
+
+	/**
+	 * Private constructor, see get.
+	 */
+	private InstrumentBank(String keyboard, double concertA, Tuning tuning) {
+		this.keyboard = keyboard;
+		frequencies = new double[keyboard.length()];
+		delayLengths = new int[keyboard.length()];
+		pools = new DelayLinePool[keyboard.length()];
+
+		HashMap<Integer, DelayLinePool> byLength = new HashMap<>();
+		for (int i = 0; i < frequencies.length; i++) {
+			frequencies[i] = tuning.frequency(i, concertA);
+			delayLengths[i] = GuitarString.delayLength(frequencies[i]);
+			pools[i] = byLength.computeIfAbsent(delayLengths[i], DelayLinePool::new);
+		}
+		distinctPools = byLength.values().toArray(new DelayLinePool[0]);
+	}
+
+
+
+	/**
+	 * Get the bank for a keyboard, building its table the first time it is asked for.
+	 *
+	 * @param keyboard The keys, one string per character
+	 * @param concertA The concert pitch
+	 * @param tuning   The tuning formula
+	 * @return The shared bank
+	 * @throws IllegalArgumentException if the keyboard is empty or a key's delay length isn't positive
+	 */
+	public static synchronized InstrumentBank get(String keyboard, double concertA, Tuning tuning) {
+		if (keyboard.isEmpty()) {
+			throw new IllegalArgumentException("Error - " + "an instrument needs at least one key");
+		}
+		HashMap<String, InstrumentBank> tuned = banks.computeIfAbsent(tuning, t -> new HashMap<>());
+		String                          key   = concertA + " " + keyboard;
+		InstrumentBank                  bank  = tuned.get(key);
+		if (bank == null) {
+			bank = new InstrumentBank(keyboard, concertA, tuning);
+			tuned.put(key, bank);
+		}
+		return bank;
+	}
+
+
+
+	/**
+	 * @return The bank behind GuitarHero's keyboard
+	 */
+	public static InstrumentBank guitarHero() {
+		return get(GUITAR_HERO_KEYBOARD, CONCERT_A, GUITAR_HERO);
+	}
+
+
+
+	/**
+	 * Create a string for every key. The strings share this bank's delay line pools,
+	 * they hold no delay line until they are plucked.
+	 *
+	 * @return One new string per key, in keyboard order
+	 */
+	public GuitarString[] newStrings() {
+		GuitarString[] strings = new GuitarString[frequencies.length];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = new GuitarString(frequencies[i], pools[i]);
+		}
+		return strings;
+	}
+
+
+
+	/**
+	 * @return The keys, one string per character
+	 */
+	public String getKeyboard() {
+		return keyboard;
+	}
+
+
+
+	/**
+	 * @return The number of keys
+	 */
+	public int numKeys() {
+		return frequencies.length;
+	}
+
+
+
+	/**
+	 * @param key The position of the key on the keyboard
+	 * @return The frequency of the key's string, in Hz
+	 */
+	public double frequency(int key) {
+		return frequencies[key];
+	}
+
+
+
+	/**
+	 * @param key The position of the key on the keyboard
+	 * @return The length of the key's delay line
+	 */
+	public int delayLength(int key) {
+		return delayLengths[key];
+	}
+
+
+
+	/**
+	 * Keep spare delay lines ready in every pool of the bank, see DelayLinePool.keepSpare.
+	 *
+	 * @param linesPerLength How many free delay lines to keep for each delay length
+	 */
+	public void keepSpare(int linesPerLength) {
+		for (DelayLinePool pool : distinctPools) {
+			pool.keepSpare(linesPerLength);
+		}
+	}
+
+
+
+	/**
+	 * @return A copy of every key's frequency in Hz, in keyboard order
+	 */
+	public double[] getFrequencies() {
+		return Arrays.copyOf(frequencies, frequencies.length);
+	}
+
+
+
+	/**
+	 * @return How many delay lines the bank's strings have needed so far
+	 */
+	public int getAllocatedDelayLines() {
+		int allocated = 0;
+		for (DelayLinePool pool : distinctPools) {
+			allocated += pool.getAllocated();
+		}
+		return allocated;
+	}
+
+
+
+	/**
+	 * @return How many times a pluck found its pool without a free delay line
+	 */
+	public int getDelayLineShortfalls() {
+		int shortfalls = 0;
+		for (DelayLinePool pool : distinctPools) {
+			shortfalls += pool.getShortfalls();
+		}
+		return shortfalls;
+	}
+
+
+
+	/**
+	 * @return How much memory the bank's delay lines take up, in bytes
+	 */
+	public long getDelayLineBytes() {
+		long bytes = 0;
+		for (DelayLinePool pool : distinctPools) {
+			bytes += (long) pool.getAllocated() * pool.getLength() * Double.BYTES;
+		}
+		return bytes;
+	}
+}
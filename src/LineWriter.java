@@ -0,0 +1,170 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         LineWriter.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Packs samples into 16-bit blocks and writes them to an ###
+ ###                audio line                                             ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A LineWriter turns samples into 16-bit bytes and sends them to an audio line in
+ * blocks, of a fixed size or sized by an {@link AdaptiveBlockSize}, with the block
+ * sizes and limits of AudioUtils. AudioUtils plays through one on the sound card,
+ * and AdaptiveBufferCheck through one on a simulated line, so both write exactly the
+ * same way. It only uses AudioUtils' constants, so it can be used without opening the
+ * sound card.
+ *
+ * @author Michael M
+ */
+final class LineWriter {
+
+	/**
+	 * An audio line the blocks can be written to, named as in SourceDataLine.
+	 */
+	interface Line extends AdaptiveBlockSize.Line {
+
+		/**
+		 * Write bytes to the line, waiting until they fit.
+		 *
+		 * @param bytes  The bytes to write
+		 * @param offset Where they start
+		 * @param length How many there are
+		 * @return How many bytes were written
+		 */
+		int write(byte[] bytes, int offset, int length);
+	}
+
+	// Where the blocks go
+	private final Line line;
+
+	// Picks the block size in adaptive mode, null in fixed mode
+	private final AdaptiveBlockSize controller;
+
+	// The block being filled, and how many of its bytes are filled
+	private final byte[] buffer;
+	private       int    bufferSize;
+
+
+
+	/**
+	 * The size AudioUtils opens the sound card line with.
+	 *
+	 * @param adaptive Whether the block size adapts
+	 * @return The line buffer size in bytes
+	 */
+	static int lineBytes(boolean adaptive) {
+		return (adaptive ? AudioUtils.ADAPTIVE_LINE_FRAMES : AudioUtils.SAMPLE_BUFFER_SIZE) * AudioUtils.BYTES_PER_SAMPLE;
+	}
+
+
+
+	/**
+	 * Create a writer for a line of lineBytes(adaptive) bytes.
+	 *
+	 * @param line     The line to write to
+	 * @param adaptive Whether the block size adapts, see AudioUtils.ADAPTIVE_PROPERTY
+	 */
+	LineWriter(Line line, boolean adaptive) {
+		this.line = line;
+		if (adaptive) {
+			// a block can grow to half of the line
+			buffer = new byte[line.getBufferSize() / 2 / AudioUtils.BYTES_PER_SAMPLE * AudioUtils.BYTES_PER_SAMPLE];
+			controller = new AdaptiveBlockSize(line, AudioUtils.BYTES_PER_SAMPLE, AudioUtils.SAMPLE_RATE,
+					AudioUtils.BLOCK_BYTES, AudioUtils.MIN_BLOCK_BYTES, buffer.length);
+		} else {
+			buffer = new byte[AudioUtils.BLOCK_BYTES];
+			controller = null;
+		}
+	}
+
+
+
+	/**
+	 * Add one sample (between -1.0 and +1.0) to the block, and send the block to the
+	 * line once it is full. If the sample is outside the range, it will be clipped.
+	 *
+	 * @param sample the sample to play
+	 * @throws IllegalArgumentException if the sample is {@code Double.NaN}
+	 */
+	void play(double sample) {
+		if (Double.isNaN(sample)) throw new IllegalArgumentException("sample is NaN");
+
+		// clip if outside [-1, +1]
+		if (sample < -1.0) sample = -1.0;
+		if (sample > +1.0) sample = +1.0;
+
+		// convert to bytes
+		short s = (short) (AudioUtils.MAX_16_BIT * sample);
+		if (sample == 1.0) s = Short.MAX_VALUE;   // special case since 32768 not a short
+		buffer[bufferSize++] = (byte) s;
+		buffer[bufferSize++] = (byte) (s >> 8);   // little endian
+
+		// send to sound card if buffer is full
+		if (bufferSize >= getBlockBytes()) {
+			// The controller measures the line before every write, without it the line is
+			// only asked how much room it has when the event is recorded
+			int queued = controller != null ? controller.beforeWrite() : 0;
+			AudioEvents.DeviceWriteEvent event = AudioEvents.begin(AudioEvents.DEVICE_WRITE, AudioEvents.DeviceWriteEvent::new);
+			int available = event == null ? 0 : controller != null ? line.getBufferSize() - queued : line.available();
+			line.write(buffer, 0, bufferSize);
+			if (AudioEvents.end(event)) {
+				event.bytes = bufferSize;
+				event.available = available;
+				event.commit();
+			}
+			bufferSize = 0;
+		}
+	}
+
+
+
+	/**
+	 * Play a block of samples, see play(double).
+	 *
+	 * @param samples the block of samples to play
+	 * @param length  how many samples from the start of the block to play
+	 */
+	void play(double[] samples, int length) {
+		for (int i = 0; i < length; i++) {
+			play(samples[i]);
+		}
+	}
+
+
+
+	/**
+	 * @return The number of bytes currently sent to the line per write
+	 */
+	int getBlockBytes() {
+		return controller != null ? controller.getBlockBytes() : buffer.length;
+	}
+
+
+
+	/**
+	 * @return The adaptive block size controller, or null in fixed mode
+	 */
+	AdaptiveBlockSize getController() {
+		return controller;
+	}
+
+
+
+	/**
+	 * @return The most recent changes of the block size in adaptive mode, oldest first
+	 */
+	List<AdaptiveBlockSize.BlockSizeChange> getHistory() {
+		return controller != null ? controller.getHistory() : Collections.emptyList();
+	}
+}
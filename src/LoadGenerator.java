@@ -0,0 +1,335 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         LoadGenerator.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Headless keystroke storm for measuring how many plucks ###
+ ###                per second the mixer can take                          ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LoadGenerator finds the capacity of the mixer: the highest rate of key presses
+ * it can sustain before the audio output starves. It runs a {@link MixerEngine} with
+ * GuitarHero's instrument against a {@link NullAudioSink}, which keeps real sound card
+ * timing without needing one, and types keys into the sessions through
+ * MixerSession.keyTyped, the same path the JavaFX key handler uses.
+ * <p>
+ * The event rate starts low and grows by a fixed factor every step, until the sink
+ * reports missed deadlines. Two other limits would stop the load from growing before
+ * the mixer runs out of time, so the generator works around them by adding players:
+ * <ul>
+ * <li>A session can only take MixerSession.KEY_QUEUE_CAPACITY keys per block. When a
+ * session drops keys the step is repeated with twice as many sessions (keys that are
+ * never plucked cost nothing, so they would make the mixer look faster than it is),
+ * and the rate at which the queue first overflowed is reported as its own limit.</li>
+ * <li>A session has one string per key, so it can't sound more voices than that. When
+ * nearly all of the strings are sounding, the number of sessions doubles too.</li>
+ * </ul>
+ * The report is the rate, voice count and number of sessions of the last step that
+ * passed, and the limit that ended the run.
+ * <p>
+ * Usage: java LoadGenerator [option=value ...], options (with defaults):
+ * <pre>
+ *     rate=10        events per second in the first step
+ *     growth=1.5     factor the rate grows by each step
+ *     maxRate=100000 stop growing past this rate
+ *     step=5         seconds per step
+ *     warmup=3       seconds at the first rate before measuring (lets the JIT settle)
+ *     chord=1        keys typed together in every burst
+ *     keys=uniform   key distribution, uniform or zipf (low keys much more likely)
+ *     sessions=1     number of independent players to start with
+ *     maxSessions=256 stop adding players past this many
+ *     buffer=4096    frames buffered by the simulated sound card
+ *     seed=0         seed for the key choices
+ * </pre>
+ *
+ * @author Michael M
+ */
+public final class LoadGenerator {
+
+	// Same keys and strings as GuitarHero
+	private static final InstrumentBank BANK     = InstrumentBank.guitarHero();
+	private static final String         KEYBOARD = BANK.getKeyboard();
+
+	// How often the voice count and render time are sampled, in milliseconds
+	private static final int POLL_MILLIS = 10;
+
+	// Add players once this fraction of their strings sound at once
+	private static final double VOICE_SATURATION = 0.9;
+
+	// Free delay lines kept ready, enough for the sessions to fill up quickly
+	private static final int SPARE_DELAY_LINES = 16;
+
+	// Settings from the command line
+	private final double  startRate;
+	private final double  growth;
+	private final double  maxRate;
+	private final double  stepSeconds;
+	private final double  warmupSeconds;
+	private final int     chord;
+	private final boolean zipf;
+	private final int     numSessions;
+	private final int     maxSessions;
+	private final int     bufferFrames;
+	private final Random  random;
+
+	// Current rate of the keystroke storm, in events per second, and the players it types into
+	private volatile double         rate;
+	private volatile boolean        storming;
+	private volatile MixerSession[] sessions = new MixerSession[0];
+
+
+
+	/**
+	 * Entry point, runs the load test and prints the capacity.
+	 *
+	 * @param args option=value pairs, see the class comment
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		HashMap<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq < 0) {
+				System.err.println("Error - " + "expected option=value, got " + arg);
+				System.exit(2);
+			}
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		new LoadGenerator(options).run();
+	}
+
+
+
+	/**
+	 * Create a load generator from command line options.
+	 *
+	 * @param options option=value pairs, see the class comment
+	 * @throws IllegalArgumentException if an option is unknown or out of range
+	 */
+	public LoadGenerator(HashMap<String, String> options) {
+		HashMap<String, String> o = new HashMap<>(options);
+		startRate = Double.parseDouble(take(o, "rate", "10"));
+		growth = Double.parseDouble(take(o, "growth", "1.5"));
+		maxRate = Double.parseDouble(take(o, "maxRate", "100000"));
+		stepSeconds = Double.parseDouble(take(o, "step", "5"));
+		warmupSeconds = Double.parseDouble(take(o, "warmup", "3"));
+		chord = Integer.parseInt(take(o, "chord", "1"));
+		numSessions = Integer.parseInt(take(o, "sessions", "1"));
+		maxSessions = Integer.parseInt(take(o, "maxSessions", "256"));
+		bufferFrames = Integer.parseInt(take(o, "buffer", "4096"));
+		random = new Random(Long.parseLong(take(o, "seed", "0")));
+
+		String keys = take(o, "keys", "uniform");
+		if (!keys.equals("uniform") && !keys.equals("zipf")) {
+			throw new IllegalArgumentException("Error - " + "keys must be uniform or zipf, got " + keys);
+		}
+		zipf = keys.equals("zipf");
+
+		if (!o.isEmpty()) {
+			throw new IllegalArgumentException("Error - " + "unknown options " + o.keySet());
+		}
+		if (startRate <= 0 || growth <= 1 || stepSeconds <= 0 || chord < 1 || numSessions < 1
+				|| maxSessions < numSessions || bufferFrames < MixerEngine.BLOCK_SIZE) {
+			throw new IllegalArgumentException("Error - " + "rate, step, chord and sessions must be positive, "
+					+ "maxSessions at least sessions, growth above 1 and buffer at least " + MixerEngine.BLOCK_SIZE + " frames");
+		}
+	}
+
+
+
+	/**
+	 * Remove an option from the map, falling back to a default.
+	 */
+	private static String take(HashMap<String, String> options, String name, String defaultValue) {
+		String value = options.remove(name);
+		return value == null ? defaultValue : value;
+	}
+
+
+
+	/**
+	 * Run the storm, growing the rate step by step until the output starts missing
+	 * deadlines, and print the results.
+	 */
+	public void run() throws InterruptedException {
+		NullAudioSink sink   = new NullAudioSink(bufferFrames);
+		MixerEngine   engine = new MixerEngine(sink);
+		addSessions(engine, numSessions);
+		BANK.keepSpare(SPARE_DELAY_LINES);
+
+		rate = startRate;
+		storming = true;
+		Thread storm = new Thread("keystrokeStorm") {
+			public void run() {
+				storm();
+			}
+		};
+		storm.setDaemon(true);
+
+		engine.start();
+		storm.start();
+
+		System.out.printf("Warming up for %.1f s at %.1f events/s%n", warmupSeconds, rate);
+		measure(engine, sink, warmupSeconds);
+
+		double sustainedRate     = 0;
+		int    sustainedVoices   = 0;
+		int    sustainedSessions = 0;
+		double queueLimit        = 0; // events/s per session when a key queue first overflowed
+		String limit             = String.format("reached maxRate=%.1f", maxRate);
+		System.out.println("    events/s   sessions   misses   dropped keys   peak voices   mean load   peak load");
+		while (rate <= maxRate) {
+			int      playing = sessions.length;
+			double[] result  = measure(engine, sink, stepSeconds);
+			int      misses  = (int) result[0];
+			int      voices  = (int) result[1];
+			long     dropped = (long) result[4];
+			System.out.printf("%12.1f %10d %8d %14d %13d %10.0f%% %10.0f%%%n", rate, playing, misses, dropped, voices,
+					result[2] * 100, result[3] * 100);
+			if (misses > 0) {
+				limit = String.format("missed deadlines at %.1f events/s", rate);
+				break;
+			}
+
+			// Spread the same rate over more key queues and try the step again
+			if (dropped > 0) {
+				if (queueLimit == 0) {
+					queueLimit = rate / playing;
+				}
+				if (playing == maxSessions) {
+					limit = String.format("key queues overflowed with maxSessions=%d players", maxSessions);
+					break;
+				}
+				addSessions(engine, Math.min(playing, maxSessions - playing));
+				continue;
+			}
+
+			sustainedRate = rate;
+			sustainedVoices = voices;
+			sustainedSessions = playing;
+			if (voices >= VOICE_SATURATION * playing * KEYBOARD.length()) {
+				addSessions(engine, Math.min(playing, maxSessions - playing));
+			}
+			rate = rate * growth;
+		}
+
+		storming = false;
+		engine.stop();
+
+		if (sustainedRate == 0) {
+			System.out.printf("Missed deadlines already at %.1f events/s, try a lower rate%n", startRate);
+		} else {
+			System.out.printf("Max sustained rate: %.1f events/s with %d voices sounding (%d sessions, chord %d, %s keys, %d frame buffer)%n",
+					sustainedRate, sustainedVoices, sustainedSessions, chord, zipf ? "zipf" : "uniform", bufferFrames);
+		}
+		System.out.println("Stopped because it " + limit);
+		if (queueLimit > 0) {
+			System.out.printf("Key queue limit: a session dropped keys at %.1f events/s (%d keys per %d frame block)%n",
+					queueLimit, MixerSession.KEY_QUEUE_CAPACITY, MixerEngine.BLOCK_SIZE);
+		}
+	}
+
+
+
+	/**
+	 * Add players to the engine while it runs, each with its own strings.
+	 *
+	 * @param count How many sessions to add
+	 */
+	private void addSessions(MixerEngine engine, int count) {
+		MixerSession[] more = Arrays.copyOf(sessions, sessions.length + count);
+		for (int s = sessions.length; s < more.length; s++) {
+			more[s] = new MixerSession(KEYBOARD, BANK.newStrings(), 1);
+			engine.addSession(more[s]);
+		}
+		sessions = more;
+	}
+
+
+
+	/**
+	 * Watch the engine for a while.
+	 *
+	 * @return deadline misses, peak active voices, mean and peak block render time as
+	 *         a fraction of the block's duration, and keys dropped by the sessions
+	 */
+	private double[] measure(MixerEngine engine, NullAudioSink sink, double seconds) throws InterruptedException {
+		long   blockNanos     = MixerEngine.BLOCK_SIZE * 1_000_000_000L / AudioUtils.SAMPLE_RATE;
+		int    missesAtStart  = sink.getDeadlineMisses();
+		long   droppedAtStart = droppedKeys();
+		long   end            = System.nanoTime() + (long) (seconds * 1e9);
+		int    peakVoices     = 0;
+		double loadSum        = 0;
+		double peakLoad       = 0;
+		int    polls          = 0;
+		while (System.nanoTime() < end) {
+			Thread.sleep(POLL_MILLIS);
+			double load = engine.getLastBlockNanos() / (double) blockNanos;
+			peakVoices = Math.max(peakVoices, engine.activeVoices());
+			peakLoad = Math.max(peakLoad, load);
+			loadSum += load;
+			polls++;
+		}
+		return new double[] { sink.getDeadlineMisses() - missesAtStart, peakVoices,
+				polls == 0 ? 0 : loadSum / polls, peakLoad, droppedKeys() - droppedAtStart };
+	}
+
+
+
+	/**
+	 * @return The keys dropped so far by all of the sessions together
+	 */
+	private long droppedKeys() {
+		long dropped = 0;
+		for (MixerSession session : sessions) {
+			dropped += session.getDroppedKeys();
+		}
+		return dropped;
+	}
+
+
+
+	/**
+	 * Type bursts of chord keys into random sessions at the current rate, until
+	 * storming is turned off.
+	 */
+	private void storm() {
+
+		// Cumulative key weights, a zipf distribution favours the first keys of the keyboard
+		double[] cumulative = new double[KEYBOARD.length()];
+		double   total      = 0;
+		for (int k = 0; k < cumulative.length; k++) {
+			total += zipf ? 1.0 / (k + 1) : 1.0;
+			cumulative[k] = total;
+		}
+
+		long next = System.nanoTime();
+		while (storming) {
+			next += (long) (chord * 1e9 / rate);
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			MixerSession[] players = sessions;
+			MixerSession   session = players[random.nextInt(players.length)];
+			for (int c = 0; c < chord; c++) {
+				int k = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+				if (k < 0) { k = -k - 1; }
+				session.keyTyped(KEYBOARD.charAt(Math.min(k, KEYBOARD.length() - 1)));
+			}
+		}
+	}
+}
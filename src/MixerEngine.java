@@ -0,0 +1,276 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         MixerEngine.java            	                           ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Mixes any number of independent sessions into the one  ###
+ ###                output line in AudioUtils                              ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Arrays;
+
+/**
+ * The MixerEngine owns the single audio output of the process. AudioUtils only has
+ * one line and one buffer, so instead of every application writing samples to it
+ * on its own thread, applications register a {@link MixerSession} with the engine.
+ * The engine's music thread renders every session into a shared block, then sends
+ * the block to its {@link AudioSink} (AudioUtils unless another sink is given).
+ * <p>
+ * Sessions can be added and removed at any time. Each session's output is scaled
+ * by its gain, and a session that goes over its CPU budget sits out the next block.
+ *
+ * @author Michael M
+ */
+public class MixerEngine {
+
+	// How many samples are rendered per block
+	public static final int BLOCK_SIZE = 512;
+
+	// The engine every application in this process shares
+	private static MixerEngine shared;
+
+	// The sessions being mixed. The array is replaced (never changed) when sessions come
+	// and go, so the music thread can loop over it without locking or an iterator.
+	private volatile MixerSession[] sessions = new MixerSession[0];
+
+	// The block every session is mixed into
+	private final double[] mix = new double[BLOCK_SIZE];
+
+	// Where the mixed blocks are sent
+	private final AudioSink sink;
+
+	// Number of sample frames rendered so far
+	private volatile long framePosition;
+
+	// How long the last block took to render, in nanoseconds
+	private volatile long lastBlockNanos;
+
+	// The engine's clock: frame = (nanoTime - clockOrigin) * FRAMES_PER_NANO + clockOffset.
+	// Blocks start a little late whenever the thread wakes up late, so the offset follows
+	// an earlier block start at once, but a later one only as fast as the sound card's
+	// clock could drift from System.nanoTime (see renderBlock).
+	private static final double FRAMES_PER_NANO = AudioUtils.SAMPLE_RATE / 1e9;
+	private static final double MAX_CLOCK_DRIFT = 100e-6;
+	private final    long       clockOrigin     = System.nanoTime();
+	private volatile double     clockOffset     = Double.NaN;
+
+	private          Thread  musicThread;
+	private volatile boolean running;
+
+
+
+	/**
+	 * Create an engine that plays through AudioUtils.
+	 */
+	public MixerEngine() {
+		this((samples, length) -> AudioUtils.play(samples, length));
+	}
+
+
+
+	/**
+	 * Create an engine that sends its blocks to the given sink.
+	 *
+	 * @param sink Where the mixed blocks are sent
+	 */
+	public MixerEngine(AudioSink sink) {
+		this.sink = sink;
+	}
+
+
+
+	/**
+	 * Get the engine shared by every application in this process, starting it the
+	 * first time it is asked for.
+	 *
+	 * @return The shared engine
+	 */
+	public static synchronized MixerEngine shared() {
+		if (shared == null) {
+			shared = new MixerEngine();
+			shared.start();
+		}
+		return shared;
+	}
+
+
+
+	/**
+	 * Add a session to the mix. It is rendered starting with the next block.
+	 *
+	 * @param session The session to add
+	 */
+	public synchronized void addSession(MixerSession session) {
+		for (MixerSession s : sessions) {
+			if (s == session) { return; }
+		}
+		MixerSession[] more = Arrays.copyOf(sessions, sessions.length + 1);
+		more[sessions.length] = session;
+		sessions = more;
+	}
+
+
+
+	/**
+	 * Remove a session from the mix.
+	 *
+	 * @param session The session to remove
+	 */
+	public synchronized void removeSession(MixerSession session) {
+		MixerSession[] fewer = new MixerSession[sessions.length];
+		int            count = 0;
+		for (MixerSession s : sessions) {
+			if (s != session) { fewer[count++] = s; }
+		}
+		sessions = Arrays.copyOf(fewer, count);
+	}
+
+
+
+	/**
+	 * Start the music thread that renders blocks and sends them to the sink.
+	 *
+	 * @throws IllegalStateException if the engine was already started (engines can't be restarted)
+	 */
+	public synchronized void start() {
+		if (musicThread != null) {
+			throw new IllegalStateException("Error - " + "the mixer engine has already been started");
+		}
+		running = true;
+		musicThread = new Thread("musicThread") {
+			public void run() {
+				while (running) {
+					renderBlock();
+
+					// send the result to audio
+					sink.write(mix, BLOCK_SIZE);
+				}
+			}
+		};
+		musicThread.setDaemon(true); // Ensure the thread dies when we exit the main application
+		musicThread.start();
+	}
+
+
+
+	/**
+	 * Stop the music thread after the block it is working on and wait for it to finish.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void stop() throws InterruptedException {
+		Thread t;
+		synchronized (this) {
+			running = false;
+			t = musicThread;
+		}
+		if (t != null) {
+			t.join();
+		}
+	}
+
+
+
+	/**
+	 * Render one block of every session into the mix.
+	 */
+	void renderBlock() {
+		AudioEvents.MixBlockEvent event = AudioEvents.begin(AudioEvents.MIX_BLOCK, AudioEvents.MixBlockEvent::new);
+		long   start      = System.nanoTime();
+		long   blockStart = framePosition;
+
+		// Move the clock (see frameAt) to where this block starts
+		double measured   = blockStart - (start - clockOrigin) * FRAMES_PER_NANO;
+		double offset     = clockOffset;
+		if (Double.isNaN(offset) || measured > offset || offset - measured > BLOCK_SIZE * 4) {
+			clockOffset = measured; // first block, running further ahead, or restarted after a stall
+		} else {
+			clockOffset = Math.max(measured, offset - BLOCK_SIZE * MAX_CLOCK_DRIFT);
+		}
+
+		for (int n = 0; n < BLOCK_SIZE; n++) {
+			mix[n] = 0;
+		}
+
+		for (MixerSession session : sessions) {
+			if (session.takeThrottled()) {
+				continue; // Went over budget last block, sit this one out
+			}
+			long sessionStart = System.nanoTime();
+			session.render(mix, BLOCK_SIZE, blockStart);
+			session.recordRender(System.nanoTime() - sessionStart);
+		}
+		framePosition += BLOCK_SIZE;
+
+		lastBlockNanos = System.nanoTime() - start;
+		if (AudioEvents.end(event)) {
+			event.frames = BLOCK_SIZE;
+			event.activeVoices = activeVoices();
+			event.commit();
+		}
+	}
+
+
+
+	/**
+	 * @return The number of sample frames rendered since the engine started
+	 */
+	public long getFramePosition() {
+		return framePosition;
+	}
+
+
+
+	/**
+	 * @return The thread rendering the blocks, or null if the engine hasn't been started
+	 */
+	synchronized Thread getMusicThread() {
+		return musicThread;
+	}
+
+
+
+	/**
+	 * Work out which frame the engine will be rendering at a given time, assuming it
+	 * keeps rendering at the sample rate. This is the clock to schedule keys against
+	 * (see MixerSession.scheduleKey). Before the first block it counts from frame 0 at
+	 * the time the engine was created.
+	 *
+	 * @param nanoTime A System.nanoTime() value, past or future
+	 * @return The engine frame for that time
+	 */
+	public long frameAt(long nanoTime) {
+		double offset = clockOffset;
+		return (long) Math.floor((nanoTime - clockOrigin) * FRAMES_PER_NANO + (Double.isNaN(offset) ? 0 : offset));
+	}
+
+
+
+	/**
+	 * @return How long the last block took to render, in nanoseconds
+	 */
+	public long getLastBlockNanos() {
+		return lastBlockNanos;
+	}
+
+
+
+	/**
+	 * @return The number of strings (or notes) still sounding across every session, as
+	 *         of the last block each one rendered
+	 */
+	public int activeVoices() {
+		int active = 0;
+		for (MixerSession session : sessions) {
+			active += session.activeVoices();
+		}
+		return active;
+	}
+}
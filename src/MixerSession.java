@@ -0,0 +1,533 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         MixerSession.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   One independent player hosted by the MixerEngine,      ###
+ ###                with its own strings, key input, gain and CPU budget   ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A MixerSession is one player (or instrument) inside a {@link MixerEngine}. It owns
+ * a set of guitar strings, one per key of its keyboard, and its own queue of typed
+ * keys. The engine asks each session to render a block of samples, which the
+ * session adds (scaled by its gain) into the shared mix.
+ * <p>
+ * Keys may be typed from any thread; they are picked up at the start of the next
+ * block the session renders. Each session also has a CPU budget per block. If a
+ * render takes longer than the budget the session sits out the next block (its
+ * strings are not advanced and it adds nothing to the mix), so a single runaway
+ * session can't starve the others of time.
+ * <p>
+ * Keys can also be scheduled for an exact frame of the engine's output (see
+ * scheduleKey), which is how {@link NetworkKeySource} places remote key presses
+ * sample-accurately inside a block instead of at its start.
+ * <p>
+ * Instead of strings, a session can also play from a {@link NoteCache}. Then a key
+ * restarts playback of its pre-rendered note and no Karplus-Strong simulation runs.
+ *
+ * @author Michael M
+ */
+public class MixerSession {
+
+	// The keys that pluck this session's strings, the ith key plucks the ith string
+	private final String         keyboard;
+	private final GuitarString[] strings;
+
+	// In wavetable mode, the pre-rendered notes and each key's playback position (-1 when silent)
+	private final NoteCache cache;
+	private final int[]     positions;
+
+	// How many typed keys can wait for the next block before new ones are dropped
+	public static final int KEY_QUEUE_CAPACITY = 256;
+
+	// Queue of keys typed for this session, a ring buffer of chars so typing a key
+	// doesn't box it or allocate a list node
+	private final char[] keysTyped = new char[KEY_QUEUE_CAPACITY];
+	private       int    keyHead;      // index of the oldest key
+	private       int    keyCount;     // number of keys waiting
+	private       int    droppedKeys;  // keys lost because the queue was full
+	private final Object keyLock = new Object(); // Used for concurrency protection
+
+	// Keys scheduled for a given frame, sorted by frame (also guarded by keyLock).
+	// Keys are stored by their index in the keyboard.
+	private final long[] scheduledFrames = new long[KEY_QUEUE_CAPACITY];
+	private final int[]  scheduledKeys   = new int[KEY_QUEUE_CAPACITY];
+	private       int    scheduledCount;
+	private       long   takenUpTo;    // keys before this frame have been handed to a block
+
+	// The scheduled keys due in the block being rendered, only used by the engine thread
+	private final long[] dueFrames = new long[KEY_QUEUE_CAPACITY];
+	private final int[]  dueKeys   = new int[KEY_QUEUE_CAPACITY];
+
+	// Plucks put off to the next block because the string's pool had no delay line free
+	// (written only by the engine thread)
+	private volatile int delayedPlucks;
+
+	// Output scaling and CPU budget (nanoseconds per block) for this session
+	private volatile double gain          = 1.0;
+	private volatile long   cpuBudgetNanos = Long.MAX_VALUE;
+
+	// Render statistics, written by the engine thread
+	private volatile long    lastRenderNanos;
+	private volatile int     overruns;
+	private volatile boolean throttled;
+	private volatile int     activeVoices; // counted at the end of every block
+
+	// The most recent (un-scaled) samples this session produced, used for visualization
+	private final double[] recent;
+	private       int      recentPos;
+	private final Object   recentLock = new Object(); // Used for concurrency protection
+
+
+
+	/**
+	 * Create a new session.
+	 *
+	 * @param keyboard  The keys the user can press, the ith key plucks the ith string
+	 * @param strings   The strings of this session's instrument
+	 * @param numRecent How many of the most recent samples to keep for visualization
+	 * @throws IllegalArgumentException if there is not exactly one string per key
+	 */
+	public MixerSession(String keyboard, GuitarString[] strings, int numRecent) {
+		if (keyboard.length() != strings.length) {
+			throw new IllegalArgumentException("Error - " + "need one string per key, got "
+					+ strings.length + " strings for " + keyboard.length() + " keys");
+		}
+		this.keyboard = keyboard;
+		this.strings = strings.clone();
+		this.cache = null;
+		this.positions = null;
+		this.recent = new double[numRecent];
+	}
+
+
+
+	/**
+	 * Create a new session that plays pre-rendered notes (wavetable mode).
+	 *
+	 * @param keyboard  The keys the user can press, the ith key plays the ith note
+	 * @param cache     The pre-rendered notes of this session's instrument
+	 * @param numRecent How many of the most recent samples to keep for visualization
+	 * @throws IllegalArgumentException if there is not exactly one note per key
+	 */
+	public MixerSession(String keyboard, NoteCache cache, int numRecent) {
+		if (keyboard.length() != cache.numNotes()) {
+			throw new IllegalArgumentException("Error - " + "need one note per key, got "
+					+ cache.numNotes() + " notes for " + keyboard.length() + " keys");
+		}
+		this.keyboard = keyboard;
+		this.strings = null;
+		this.cache = cache;
+		this.positions = new int[keyboard.length()];
+		Arrays.fill(positions, -1);
+		this.recent = new double[numRecent];
+	}
+
+
+
+	/**
+	 * Queue a key typed by the user. Keys that are not part of this session's
+	 * keyboard are ignored when they are processed. If KEY_QUEUE_CAPACITY keys are
+	 * already waiting the key is dropped.
+	 *
+	 * @param key The character of the key the user typed
+	 */
+	public void keyTyped(char key) {
+		synchronized (keyLock) {
+			if (keyCount == keysTyped.length) {
+				droppedKeys++;
+				return;
+			}
+			keysTyped[(keyHead + keyCount) % keysTyped.length] = key;
+			keyCount++;
+		}
+	}
+
+
+
+	/**
+	 * Schedule a key to be pressed at an exact frame of the engine's output. If the
+	 * frame has already been rendered the key is pressed at the start of the next
+	 * block. Keys that are not part of this session's keyboard are ignored, and if
+	 * KEY_QUEUE_CAPACITY keys are already scheduled the key is dropped.
+	 *
+	 * @param key   The character of the key
+	 * @param frame The engine frame (see MixerEngine.getFramePosition) to press it at
+	 * @return false if the key came too late for its frame, true otherwise
+	 */
+	public boolean scheduleKey(char key, long frame) {
+		int index = keyboard.indexOf(key);
+		return index < 0 || scheduleIndex(index, frame);
+	}
+
+
+
+	/**
+	 * Schedule the ith string (or note) of this session to be plucked at an exact frame
+	 * of the engine's output, see scheduleKey.
+	 *
+	 * @param index The number of the string, ignored if out of range
+	 * @param frame The engine frame to pluck it at
+	 * @return false if the key came too late for its frame, true otherwise
+	 */
+	public boolean scheduleIndex(int index, long frame) {
+		if (index < 0 || index >= keyboard.length()) {
+			return true;
+		}
+		synchronized (keyLock) {
+			if (scheduledCount == scheduledFrames.length) {
+				droppedKeys++;
+				return true;
+			}
+
+			// Insertion sort from the back, keys usually arrive in order so this rarely moves anything
+			int i = scheduledCount++;
+			while (i > 0 && scheduledFrames[i - 1] > frame) {
+				scheduledFrames[i] = scheduledFrames[i - 1];
+				scheduledKeys[i] = scheduledKeys[i - 1];
+				i--;
+			}
+			scheduledFrames[i] = frame;
+			scheduledKeys[i] = index;
+			return frame >= takenUpTo;
+		}
+	}
+
+
+
+	/**
+	 * Move the scheduled keys that fall before a given frame into dueFrames/dueKeys.
+	 *
+	 * @param end The first frame after the block being rendered
+	 * @return How many keys are due
+	 */
+	private int takeDueKeys(long end) {
+		synchronized (keyLock) {
+			int due = 0;
+			while (due < scheduledCount && scheduledFrames[due] < end) {
+				dueFrames[due] = scheduledFrames[due];
+				dueKeys[due] = scheduledKeys[due];
+				due++;
+			}
+			System.arraycopy(scheduledFrames, due, scheduledFrames, 0, scheduledCount - due);
+			System.arraycopy(scheduledKeys, due, scheduledKeys, 0, scheduledCount - due);
+			scheduledCount -= due;
+			takenUpTo = end;
+			return due;
+		}
+	}
+
+
+
+	/**
+	 * Checks if the user has typed a key that we haven't dealt with yet
+	 *
+	 * @return true if there are keys remaining in the queue of typed keys, false otherwise
+	 */
+	public boolean hasNextKeyTyped() {
+		synchronized (keyLock) {
+			return keyCount > 0;
+		}
+	}
+
+
+
+	/**
+	 * Get the next key that the user has typed
+	 *
+	 * @return The next key in the queue of keys that the user has typed
+	 * @throws NoSuchElementException if the queue of typed keys is empty
+	 */
+	public char nextKeyTyped() {
+		synchronized (keyLock) {
+			if (keyCount == 0) {
+				throw new NoSuchElementException("Error - your program has already processed all keystrokes");
+			}
+			AudioEvents.KeyDequeueEvent event = AudioEvents.begin(AudioEvents.KEY_DEQUEUE, AudioEvents.KeyDequeueEvent::new);
+			char key = keysTyped[keyHead];
+			keyHead = (keyHead + 1) % keysTyped.length;
+			keyCount--;
+			if (AudioEvents.end(event)) {
+				event.key = String.valueOf(key);
+				event.pending = keyCount;
+				event.commit();
+			}
+			return key;
+		}
+	}
+
+
+
+	/**
+	 * Render a block of samples and add them, scaled by the gain, into the mix.
+	 * Any keys typed since the last block are plucked first, and scheduled keys are
+	 * plucked at their frame within the block.
+	 *
+	 * @param mix        The block being mixed by the engine
+	 * @param frames     How many samples of the block to render
+	 * @param blockStart The engine frame of the first sample of the block
+	 */
+	void render(double[] mix, int frames, long blockStart) {
+
+		// Pluck the strings for every key typed since the last block
+		long end = blockStart + frames;
+		while (hasNextKeyTyped()) {
+			pluck(keyboard.indexOf(nextKeyTyped()), end);
+		}
+
+		int due  = takeDueKeys(end);
+		int next = 0;
+
+		double g = gain;
+		synchronized (recentLock) {
+			for (int n = 0; n < frames; n++) {
+
+				// Pluck the scheduled keys that land on this frame (or were already late)
+				while (next < due && dueFrames[next] <= blockStart + n) {
+					pluck(dueKeys[next++], end);
+				}
+
+				double sample = cache == null ? nextStringSample() : nextCachedSample();
+				mix[n] += g * sample;
+
+				// Keep the sample around for visualization
+				recent[recentPos] = sample;
+				recentPos = (recentPos + 1) % recent.length;
+			}
+		}
+
+		// Strings are only safe to look at from this thread (a pooled string drops its
+		// queue when it falls silent), so other threads get the count from here
+		activeVoices = countActiveVoices();
+	}
+
+
+
+	/**
+	 * Pluck the ith string, or restart the ith note in wavetable mode. If the string
+	 * can't get a delay line yet, the pluck is scheduled again for the next block.
+	 *
+	 * @param index      The number of the string, nothing happens if it is negative
+	 * @param retryFrame The first frame of the next block
+	 */
+	private void pluck(int index, long retryFrame) {
+		if (index >= 0 && cache != null) {
+			positions[index] = 0;
+		} else if (index >= 0 && !strings[index].pluck()) {
+			delayedPlucks++;
+			scheduleIndex(index, retryFrame);
+		}
+	}
+
+
+
+	/**
+	 * Compute the superposition of the samples from all guitar strings, then advance
+	 * the simulation of each string by one step.
+	 *
+	 * @return The mixed sample
+	 */
+	private double nextStringSample() {
+		double sample = 0;
+		for (GuitarString s : strings) {
+			sample += s.sample();
+		}
+		for (GuitarString s : strings) {
+			s.tic();
+		}
+		return sample;
+	}
+
+
+
+	/**
+	 * Compute the superposition of every note that is playing from the cache, then
+	 * advance each one by a sample.
+	 *
+	 * @return The mixed sample
+	 */
+	private double nextCachedSample() {
+		double sample = 0;
+		for (int k = 0; k < positions.length; k++) {
+			int pos = positions[k];
+			if (pos >= 0) {
+				sample += cache.sample(k, pos);
+				positions[k] = pos + 1 < cache.length(k) ? pos + 1 : -1;
+			}
+		}
+		return sample;
+	}
+
+
+
+	/**
+	 * Copy the most recent samples this session produced, oldest first.
+	 *
+	 * @param dst The array to copy into, should be as long as numRecent
+	 * @return The number of samples copied
+	 */
+	public int copyRecentSamples(double[] dst) {
+		synchronized (recentLock) {
+			int count = Math.min(dst.length, recent.length);
+			for (int i = 0; i < count; i++) {
+				dst[i] = recent[(recentPos + recent.length - count + i) % recent.length];
+			}
+			return count;
+		}
+	}
+
+
+
+	/**
+	 * The number of strings of this session that were still sounding at the end of
+	 * the last block it rendered. Safe to call from any thread.
+	 *
+	 * @return The number of strings that aren't silent (or cached notes still playing)
+	 */
+	public int activeVoices() {
+		return activeVoices;
+	}
+
+
+
+	/**
+	 * Count the strings of this session that are still sounding, only called by the
+	 * engine thread.
+	 *
+	 * @return The number of strings that aren't silent (or cached notes still playing)
+	 */
+	private int countActiveVoices() {
+		int active = 0;
+		if (cache != null) {
+			for (int pos : positions) {
+				if (pos >= 0) { active++; }
+			}
+			return active;
+		}
+		for (GuitarString s : strings) {
+			if (!s.isSilent()) { active++; }
+		}
+		return active;
+	}
+
+
+
+	/**
+	 * @return How many typed or scheduled keys were dropped because their queue was full
+	 */
+	public int getDroppedKeys() {
+		synchronized (keyLock) {
+			return droppedKeys;
+		}
+	}
+
+
+
+	/**
+	 * @return How many plucks waited a block because their string had no delay line yet
+	 */
+	public int getDelayedPlucks() {
+		return delayedPlucks;
+	}
+
+
+
+	/**
+	 * @return The factor this session's output is scaled by before mixing
+	 */
+	public double getGain() {
+		return gain;
+	}
+
+
+
+	/**
+	 * @param gain The factor this session's output is scaled by before mixing
+	 */
+	public void setGain(double gain) {
+		this.gain = gain;
+	}
+
+
+
+	/**
+	 * @return The longest this session may take to render one block, in nanoseconds
+	 */
+	public long getCpuBudgetNanos() {
+		return cpuBudgetNanos;
+	}
+
+
+
+	/**
+	 * Set the longest this session may take to render one block. A session that goes
+	 * over its budget sits out the next block.
+	 *
+	 * @param cpuBudgetNanos The budget in nanoseconds, Long.MAX_VALUE for no limit
+	 * @throws IllegalArgumentException if the budget is not positive
+	 */
+	public void setCpuBudgetNanos(long cpuBudgetNanos) {
+		if (cpuBudgetNanos <= 0) {
+			throw new IllegalArgumentException("Error - " + "CPU budget must be positive");
+		}
+		this.cpuBudgetNanos = cpuBudgetNanos;
+	}
+
+
+
+	/**
+	 * @return How long the last block took to render, in nanoseconds
+	 */
+	public long getLastRenderNanos() {
+		return lastRenderNanos;
+	}
+
+
+
+	/**
+	 * @return How many blocks took longer to render than the CPU budget
+	 */
+	public int getOverruns() {
+		return overruns;
+	}
+
+
+
+	/**
+	 * Record how long the engine spent rendering the last block and decide whether
+	 * the session has to sit out the next one.
+	 *
+	 * @param elapsedNanos Time spent in render()
+	 */
+	void recordRender(long elapsedNanos) {
+		lastRenderNanos = elapsedNanos;
+		throttled = elapsedNanos > cpuBudgetNanos;
+		if (throttled) {
+			overruns++;
+		}
+	}
+
+
+
+	/**
+	 * Check (and clear) whether the session went over budget on its last block.
+	 *
+	 * @return true if the session should sit out this block
+	 */
+	boolean takeThrottled() {
+		boolean t = throttled;
+		throttled = false;
+		return t;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         NetworkInputCheck.java            	                   ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Checks that network key events are plucked at the      ###
+ ###                frames their timestamps say, over loopback             ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The NetworkInputCheck tests the jitter buffer of {@link NetworkKeySource} without a
+ * sound card or a second machine. A {@link MixerEngine} plays into a
+ * {@link NullAudioSink}, a NetworkKeySource listens on a free port, and a
+ * {@link NetworkKeySender} in the same process plucks strings at a steady rate over
+ * 127.0.0.1, optionally holding each packet back by a random delay after stamping it.
+ * <p>
+ * The strings note the frame they are plucked at. Every pluck should land exactly as
+ * far after the previous one as its timestamp says, so the check compares the frame
+ * spacing with the timestamp spacing. The source only learns how fast the network can
+ * be from the packets it gets, so the first WARMUP_PLUCKS aren't measured. It passes if every pluck arrived, none was late
+ * or lost, and no spacing is off by more than MAX_SPACING_ERROR frames, and prints
+ * PASS or FAIL (exiting with status 0 or 1).
+ * <p>
+ * Usage: java NetworkInputCheck [udp|tcp] [keysPerSecond] [senderJitterMillis] [jitterMillis] [count]
+ *
+ * @author Michael M
+ */
+public final class NetworkInputCheck {
+
+	// How far the spacing of two plucks may be from their timestamps, in frames (under a
+	// tenth of a millisecond: the timestamps are whole microseconds, the frames are
+	// rounded down, and the engine's clock wanders by a frame or two)
+	private static final int MAX_SPACING_ERROR = 4;
+
+	// How long the engine runs before the first key, so its clock has settled
+	private static final int SETTLE_MILLIS = 1000;
+
+	// Plucks sent before the spacing is measured
+	private static final int WARMUP_PLUCKS = 20;
+
+	// When each pluck happened, by the strings (frames) and by the sender (microseconds).
+	// The frames are written by the music thread and read once the engine has stopped.
+	private static long[] pluckFrames;
+	private static int    numPlucks;
+	private static long[] pressMicros;
+
+	// Not meant to be instantiated, see main
+	private NetworkInputCheck() { }
+
+
+
+	/**
+	 * A string that notes the engine frame of every pluck. The session tics every one
+	 * of its strings once per frame from the engine's first block on, so a string's
+	 * time is the engine frame.
+	 */
+	private static final class RecordingString extends GuitarString {
+
+		RecordingString(double frequency) {
+			super(frequency);
+		}
+
+		@Override
+		public boolean pluck(Random random) {
+			if (numPlucks < pluckFrames.length) {
+				pluckFrames[numPlucks++] = time();
+			}
+			return super.pluck(random);
+		}
+	}
+
+
+
+	/**
+	 * Entry point, sends the keys over loopback and checks where they were plucked.
+	 *
+	 * @param args optional protocol, key rate, sender jitter, receiver jitter and count
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String protocol           = args.length > 0 ? args[0] : "udp";
+		double keysPerSecond      = args.length > 1 ? Double.parseDouble(args[1]) : 20;
+		double senderJitterMillis = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+		double jitterMillis       = args.length > 3 ? Double.parseDouble(args[3]) : 30;
+		int    count              = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+
+		InstrumentBank bank    = InstrumentBank.guitarHero();
+		GuitarString[] strings = new GuitarString[bank.numKeys()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = new RecordingString(bank.frequency(i));
+		}
+		pluckFrames = new long[count];
+		pressMicros = new long[count];
+
+		MixerEngine  engine  = new MixerEngine(new NullAudioSink(4096));
+		MixerSession session = new MixerSession(bank.getKeyboard(), strings, 1);
+		engine.addSession(session);
+		engine.start();
+		Thread.sleep(SETTLE_MILLIS);
+
+		Random random = new Random(0);
+		try (NetworkKeySource  source = new NetworkKeySource(protocol, 0, engine, session, jitterMillis);
+		     NetworkKeySender sender = new NetworkKeySender(protocol, "127.0.0.1", source.getPort())) {
+
+			// Give a TCP receiver time to accept the connection
+			Thread.sleep(100);
+
+			System.out.printf("Sending %d plucks over %s at %.1f keys/s, sender jitter %.1f ms, jitterMillis %.1f%n",
+					count, protocol, keysPerSecond, senderJitterMillis, jitterMillis);
+			long next = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				next += (long) (1e9 / keysPerSecond);
+				long wait = next - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+
+				// Stamp the pluck now, but let it reach the network a little later
+				pressMicros[i] = System.nanoTime() / 1000;
+				LockSupport.parkNanos((long) (random.nextDouble() * senderJitterMillis * 1_000_000));
+				sender.send(NetworkKeySource.TYPE_PLUCK, (char) (i % strings.length), pressMicros[i]);
+			}
+
+			// Let the last events reach their frames
+			Thread.sleep((long) (jitterMillis + 200));
+			engine.stop();
+
+			double worst = 0;
+			for (int i = WARMUP_PLUCKS + 1; i < numPlucks; i++) {
+				double expected = (pressMicros[i] - pressMicros[i - 1]) * AudioUtils.SAMPLE_RATE / 1e6;
+				worst = Math.max(worst, Math.abs(pluckFrames[i] - pluckFrames[i - 1] - expected));
+			}
+			System.out.printf("%d of %d plucks played, %d late, %d lost, network jitter %.0f us%n",
+					numPlucks, count, source.getLateEvents(), source.getLostEvents(), source.getJitterMicros());
+			System.out.printf("Worst spacing error: %.1f frames%n", worst);
+
+			if (numPlucks < count || source.getLateEvents() > 0 || source.getLostEvents() > 0
+					|| worst > MAX_SPACING_ERROR) {
+				System.out.println("FAIL: network key events weren't played at their timestamps");
+				System.exit(1);
+			}
+			System.out.println("PASS");
+		}
+	}
+}
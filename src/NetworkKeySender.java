@@ -0,0 +1,179 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         NetworkKeySender.java            	                   ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Sends timestamped key presses to a NetworkKeySource,   ###
+ ###                doubles as a loopback test controller                  ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A NetworkKeySender is the controller end of a {@link NetworkKeySource}. Each key
+ * press is stamped with this process's clock and sent right away, one event per
+ * datagram over UDP.
+ * <p>
+ * Run on its own it plays keys at a steady rate, which is a simple way to check a
+ * NetworkKeySource over loopback. The optional jitter holds each packet back by a
+ * random delay after stamping it, like a slow network would, and the keys should
+ * still come out evenly spaced as long as the receiver's jitterMillis is larger.
+ * {@link NetworkInputCheck} does exactly that against a receiver in the same process
+ * and checks the frames the keys were played at.
+ * <p>
+ * Usage: java NetworkKeySender udp|tcp host port [keysPerSecond] [jitterMillis] [count]
+ *
+ * @author Michael M
+ */
+public final class NetworkKeySender implements Closeable {
+
+	// The sockets, only one of them is used
+	private final DatagramSocket udpSocket;
+	private final Socket         tcpSocket;
+	private final OutputStream   tcpOut;
+
+	// Reused for every event
+	private final byte[]         buffer = new byte[NetworkKeySource.EVENT_SIZE];
+	private final ByteBuffer     writer = ByteBuffer.wrap(buffer);
+	private final DatagramPacket packet;
+
+	private int sequence;
+
+
+
+	/**
+	 * Entry point, sends keys from GuitarHero's keyboard in order until count is reached.
+	 *
+	 * @param args protocol, host and port of the receiver, then optional keys per
+	 *             second (default 4), jitter in milliseconds (default 0) and count
+	 *             (default 100)
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: java NetworkKeySender udp|tcp host port [keysPerSecond] [jitterMillis] [count]");
+			System.exit(2);
+		}
+		double rate         = args.length > 3 ? Double.parseDouble(args[3]) : 4;
+		double jitterMillis = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+		int    count        = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+		Random random       = new Random();
+		String keyboard     = InstrumentBank.GUITAR_HERO_KEYBOARD;
+
+		try (NetworkKeySender sender = new NetworkKeySender(args[0], args[1], Integer.parseInt(args[2]))) {
+			long next = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				next += (long) (1e9 / rate);
+				long wait = next - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+
+				// Stamp the key now, but let it reach the network a little later
+				long pressed = System.nanoTime() / 1000;
+				LockSupport.parkNanos((long) (random.nextDouble() * jitterMillis * 1_000_000));
+				sender.send(NetworkKeySource.TYPE_KEY, keyboard.charAt(i % keyboard.length()), pressed);
+			}
+		}
+	}
+
+
+
+	/**
+	 * Connect to a NetworkKeySource.
+	 *
+	 * @param protocol "udp" or "tcp"
+	 * @param host     The receiver's host name or address
+	 * @param port     The receiver's port
+	 * @throws IOException if the receiver can't be reached
+	 * @throws IllegalArgumentException if the protocol is unknown
+	 */
+	public NetworkKeySender(String protocol, String host, int port) throws IOException {
+		InetAddress address = InetAddress.getByName(host);
+		if (protocol.equals("udp")) {
+			udpSocket = new DatagramSocket();
+			packet = new DatagramPacket(buffer, buffer.length, new InetSocketAddress(address, port));
+			tcpSocket = null;
+			tcpOut = null;
+		} else if (protocol.equals("tcp")) {
+			udpSocket = null;
+			packet = null;
+			tcpSocket = new Socket(address, port);
+			tcpSocket.setTcpNoDelay(true);
+			tcpOut = tcpSocket.getOutputStream();
+		} else {
+			throw new IllegalArgumentException("Error - " + "protocol must be udp or tcp, got " + protocol);
+		}
+	}
+
+
+
+	/**
+	 * Send a key press that happens now.
+	 *
+	 * @param key The character of the key
+	 */
+	public void sendKey(char key) throws IOException {
+		send(NetworkKeySource.TYPE_KEY, key, System.nanoTime() / 1000);
+	}
+
+
+
+	/**
+	 * Send a pluck of a string by number that happens now.
+	 *
+	 * @param index The number of the string
+	 */
+	public void sendPluck(int index) throws IOException {
+		send(NetworkKeySource.TYPE_PLUCK, (char) index, System.nanoTime() / 1000);
+	}
+
+
+
+	/**
+	 * Send one event.
+	 *
+	 * @param type         NetworkKeySource.TYPE_KEY or TYPE_PLUCK
+	 * @param value        The key or string number
+	 * @param senderMicros When the event happened, on this process's clock in microseconds
+	 */
+	public void send(byte type, char value, long senderMicros) throws IOException {
+		writer.clear();
+		writer.put(type).put((byte) 0).putChar(value).putInt(sequence++).putLong(senderMicros);
+		if (udpSocket != null) {
+			udpSocket.send(packet);
+		} else {
+			tcpOut.write(buffer);
+		}
+	}
+
+
+
+	/**
+	 * Close the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (udpSocket != null) {
+			udpSocket.close();
+		} else {
+			tcpSocket.close();
+		}
+	}
+}
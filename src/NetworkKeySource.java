@@ -0,0 +1,433 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         NetworkKeySource.java            	                   ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Receives timestamped key presses from remote           ###
+ ###                controllers over UDP or TCP and schedules them         ###
+ ###                through a jitter buffer                                ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+/**
+ * A NetworkKeySource lets a remote controller play a {@link MixerSession}. It listens
+ * on a UDP or TCP port for key events, each stamped with the time it was pressed on
+ * the controller, and schedules them at the matching frame of the {@link MixerEngine}
+ * instead of whenever the packet happens to arrive.
+ * <p>
+ * Every event is a 16 byte record (big endian): the event type (TYPE_KEY or
+ * TYPE_PLUCK), a reserved byte, the value (the key's character or the string number),
+ * a sequence number, and the controller's clock in microseconds. A UDP datagram can
+ * carry several records, over TCP they are simply sent back to back.
+ * {@link NetworkKeySender} sends this format and can be used as a loopback controller.
+ * <p>
+ * The jitter buffer: the controller's clock is mapped to ours with the smallest
+ * transit time (local arrival - controller time) seen so far, the packet that got
+ * through the network the fastest. A packet's transit is measured once, with its
+ * newest event. Two clocks never run at exactly the same rate, so the estimate is
+ * allowed to grow by MAX_CLOCK_DRIFT of the time that has passed. A faster packet
+ * moves it back down, at once for the first SYNC_PACKETS packets and by at most
+ * MAX_CLOCK_SLEW of the time that has passed after that: every change of the offset
+ * shifts the events after it against the ones before, so keeping the changes slow
+ * keeps the spacing of the events exact to a sample. Every event is then played
+ * jitterMillis after that mapped time, plus one block since the engine needs a key
+ * before it starts rendering the block the key falls in. A larger jitterMillis adds
+ * that much latency but keeps the spacing of the events exact as long as the network
+ * varies by less than it, a smaller one responds sooner but packets later than it are
+ * played at the start of the next block (see getLateEvents). getJitterMicros reports the network
+ * jitter measured so far, as a guide for the setting.
+ * <p>
+ * A port is played by one controller at a time, since every controller has its own
+ * clock and sequence numbers. Over TCP that is the connected one, and the clock and
+ * statistics start over for every new connection. Over UDP the first sender is the
+ * controller; datagrams from anyone else are ignored (see getIgnoredPackets) until it
+ * has been quiet for CONTROLLER_TIMEOUT_MILLIS, then the next sender takes over with
+ * a fresh clock.
+ * <p>
+ * Packets are decoded out of one reused buffer, so receiving doesn't allocate per
+ * packet in this class.
+ *
+ * @author Michael M
+ */
+public final class NetworkKeySource implements Closeable {
+
+	// Event types
+	public static final byte TYPE_KEY   = 1; // value is the character of the key
+	public static final byte TYPE_PLUCK = 2; // value is the number of the string
+
+	// Size of one event record, in bytes
+	public static final int EVENT_SIZE = 16;
+
+	// How much faster or slower the controller's clock may run than ours, how fast the
+	// offset may move to a faster transit, and for how many packets it moves at once
+	private static final double MAX_CLOCK_DRIFT = 100e-6;
+	private static final double MAX_CLOCK_SLEW  = 500e-6;
+	private static final int    SYNC_PACKETS    = 16;
+
+	// Room for this many events in one datagram or TCP read
+	private static final int BUFFER_EVENTS = 64;
+
+	// How long a UDP controller can be quiet before another sender can take over
+	public static final int CONTROLLER_TIMEOUT_MILLIS = 2000;
+
+	// Where the events go
+	private final MixerEngine  engine;
+	private final MixerSession session;
+
+	// How long events are held back to absorb network jitter and let the engine see
+	// them before it renders their block, in nanoseconds
+	private final long holdNanos;
+
+	// The sockets, only one of them is used
+	private final DatagramSocket udpSocket;
+	private final ServerSocket   tcpSocket;
+	private volatile Socket      connection; // the current TCP controller
+
+	// Reused for every packet
+	private final byte[]         buffer = new byte[BUFFER_EVENTS * EVENT_SIZE];
+	private final ByteBuffer     reader = ByteBuffer.wrap(buffer);
+	private final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+	// The controller's clock offset (smallest local arrival - controller time) in
+	// microseconds and when it was last updated, only used by the network thread
+	private int     numTransits;
+	private double  offsetMicros;
+	private long    offsetUpdatedMicros;
+	private long    lastTransit;
+	private int     nextSequence;
+
+	// The UDP controller being listened to, and when it last sent something
+	private InetAddress controllerAddress;
+	private int         controllerPort;
+	private long        controllerNanos;
+
+	// Statistics
+	private volatile long   packets;      // datagrams or TCP reads received
+	private volatile long   events;       // events scheduled
+	private volatile long   lateEvents;   // events that came too late for their frame
+	private volatile long   lostEvents;   // gaps in the sequence numbers
+	private volatile long   badEvents;    // records with an unknown type
+	private volatile long   ignored;      // UDP datagrams from other senders
+	private volatile double jitterMicros; // smoothed transit time variation
+
+	private final    Thread  thread;
+	private volatile boolean running = true;
+
+
+
+	/**
+	 * Start listening for key events.
+	 *
+	 * @param protocol     "udp" or "tcp"
+	 * @param port         The port to listen on, 0 picks a free one (see getPort)
+	 * @param engine       The engine whose clock the events are scheduled against
+	 * @param session      The session the keys are played on
+	 * @param jitterMillis How long to hold events back to absorb network jitter
+	 * @throws IOException if the port can't be opened
+	 * @throws IllegalArgumentException if the protocol is unknown or jitterMillis is negative
+	 */
+	public NetworkKeySource(String protocol, int port, MixerEngine engine, MixerSession session,
+			double jitterMillis) throws IOException {
+		if (jitterMillis < 0) {
+			throw new IllegalArgumentException("Error - " + "jitterMillis can't be negative, got " + jitterMillis);
+		}
+		this.engine = engine;
+		this.session = session;
+		this.holdNanos = (long) (jitterMillis * 1_000_000) + MixerEngine.BLOCK_SIZE * 1_000_000_000L / AudioUtils.SAMPLE_RATE;
+
+		if (protocol.equals("udp")) {
+			udpSocket = new DatagramSocket(port);
+			tcpSocket = null;
+		} else if (protocol.equals("tcp")) {
+			udpSocket = null;
+			tcpSocket = new ServerSocket(port);
+		} else {
+			throw new IllegalArgumentException("Error - " + "protocol must be udp or tcp, got " + protocol);
+		}
+
+		thread = new Thread("networkInput") {
+			public void run() {
+				try {
+					if (udpSocket != null) {
+						receiveUdp();
+					} else {
+						receiveTcp();
+					}
+				} catch (IOException e) {
+					if (running) {
+						System.out.println(e.getMessage());
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+
+
+	/**
+	 * Receive datagrams until closed.
+	 */
+	private void receiveUdp() throws IOException {
+		while (running) {
+			packet.setLength(buffer.length);
+			udpSocket.receive(packet);
+			long now = System.nanoTime();
+
+			// Stick to one controller, another sender can take over once it has gone quiet
+			boolean fromController = packet.getPort() == controllerPort && packet.getAddress().equals(controllerAddress);
+			if (!fromController) {
+				if (controllerAddress != null && now - controllerNanos < CONTROLLER_TIMEOUT_MILLIS * 1_000_000L) {
+					ignored++;
+					continue;
+				}
+				controllerAddress = packet.getAddress();
+				controllerPort = packet.getPort();
+				newController();
+			}
+			controllerNanos = now;
+			packets++;
+			decode(packet.getLength());
+		}
+	}
+
+
+
+	/**
+	 * Accept one controller at a time and read its events until closed.
+	 */
+	private void receiveTcp() throws IOException {
+		while (running) {
+			try (Socket socket = tcpSocket.accept()) {
+				socket.setTcpNoDelay(true);
+				connection = socket;
+				newController();
+				InputStream in     = socket.getInputStream();
+				int         filled = 0;
+				int         read;
+				while ((read = in.read(buffer, filled, buffer.length - filled)) > 0) {
+					packets++;
+					filled += read;
+
+					// Decode the whole records, and keep a partial one for the next read
+					int whole = filled / EVENT_SIZE * EVENT_SIZE;
+					decode(whole);
+					System.arraycopy(buffer, whole, buffer, 0, filled - whole);
+					filled -= whole;
+				}
+			} catch (SocketException e) {
+				// The controller hung up, or we were closed
+			}
+			connection = null;
+		}
+	}
+
+
+
+	/**
+	 * Forget the last controller's clock, sequence numbers and jitter.
+	 */
+	private void newController() {
+		numTransits = 0;
+		lastTransit = 0;
+		nextSequence = 0;
+		jitterMicros = 0;
+	}
+
+
+
+	/**
+	 * Decode and schedule the events at the start of the buffer.
+	 *
+	 * @param length How many bytes of the buffer hold events
+	 */
+	private void decode(int length) {
+		if (length < EVENT_SIZE) {
+			return;
+		}
+
+		// One transit per packet, the events in it were sent together with the newest one
+		long localMicros = System.nanoTime() / 1000;
+		long newest      = Long.MIN_VALUE;
+		for (int at = 0; at + EVENT_SIZE <= length; at += EVENT_SIZE) {
+			newest = Math.max(newest, reader.getLong(at + 8));
+		}
+		long offset = offset(localMicros - newest, localMicros);
+
+		reader.clear();
+		while (reader.position() + EVENT_SIZE <= length) {
+			byte  type         = reader.get();
+			reader.get(); // reserved
+			char  value        = reader.getChar();
+			int   sequence     = reader.getInt();
+			long  senderMicros = reader.getLong();
+
+			if (sequence - nextSequence > 0) {
+				lostEvents += sequence - nextSequence;
+			}
+			if (sequence - nextSequence >= 0) {
+				nextSequence = sequence + 1;
+			}
+
+			long    frame  = engine.frameAt((senderMicros + offset) * 1000 + holdNanos);
+			boolean onTime = true;
+			if (type == TYPE_KEY) {
+				onTime = session.scheduleKey(value, frame);
+				events++;
+			} else if (type == TYPE_PLUCK) {
+				onTime = session.scheduleIndex(value, frame);
+				events++;
+			} else {
+				badEvents++;
+			}
+			if (!onTime) {
+				lateEvents++;
+			}
+		}
+	}
+
+
+
+	/**
+	 * Update the jitter estimate and the controller's clock offset with a packet's
+	 * transit time.
+	 *
+	 * @param transit     Local arrival time minus the controller's time, in microseconds
+	 * @param localMicros Local arrival time, in microseconds
+	 * @return The controller's clock offset, in microseconds
+	 */
+	private long offset(long transit, long localMicros) {
+		long elapsed = localMicros - offsetUpdatedMicros;
+		if (numTransits == 0) {
+			offsetMicros = transit;
+		} else {
+			// Smoothed like the interarrival jitter of RTP (RFC 3550)
+			jitterMicros += (Math.abs(transit - lastTransit) - jitterMicros) / 16;
+			if (transit > offsetMicros) {
+				offsetMicros = Math.min(transit, offsetMicros + elapsed * MAX_CLOCK_DRIFT);
+			} else if (numTransits < SYNC_PACKETS) {
+				offsetMicros = transit;
+			} else {
+				offsetMicros = Math.max(transit, offsetMicros - elapsed * MAX_CLOCK_SLEW);
+			}
+		}
+		numTransits++;
+		lastTransit = transit;
+		offsetUpdatedMicros = localMicros;
+		return (long) Math.floor(offsetMicros);
+	}
+
+
+
+	/**
+	 * Stop listening and close the socket.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		if (udpSocket != null) {
+			udpSocket.close();
+		} else {
+			Socket socket = connection;
+			if (socket != null) {
+				socket.close();
+			}
+			tcpSocket.close();
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+
+	/**
+	 * @return The port events are received on
+	 */
+	public int getPort() {
+		return udpSocket != null ? udpSocket.getLocalPort() : tcpSocket.getLocalPort();
+	}
+
+
+
+	/**
+	 * @return How many datagrams (or TCP reads) have been received
+	 */
+	public long getPackets() {
+		return packets;
+	}
+
+
+
+	/**
+	 * @return How many events have been scheduled
+	 */
+	public long getEvents() {
+		return events;
+	}
+
+
+
+	/**
+	 * @return How many events came too late for their frame, raise jitterMillis if this keeps growing
+	 */
+	public long getLateEvents() {
+		return lateEvents;
+	}
+
+
+
+	/**
+	 * @return How many events never arrived, going by the gaps in their sequence numbers
+	 */
+	public long getLostEvents() {
+		return lostEvents;
+	}
+
+
+
+	/**
+	 * @return How many events had an unknown type and were ignored
+	 */
+	public long getBadEvents() {
+		return badEvents;
+	}
+
+
+
+	/**
+	 * @return How many UDP datagrams were ignored because another controller was playing
+	 */
+	public long getIgnoredPackets() {
+		return ignored;
+	}
+
+
+
+	/**
+	 * @return The network jitter measured from the current controller, in microseconds
+	 */
+	public double getJitterMicros() {
+		return jitterMicros;
+	}
+}
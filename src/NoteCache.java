@@ -0,0 +1,286 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         NoteCache.java            	                           ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Memory-mapped file of pre-rendered note decays for     ###
+ ###                wavetable playback                                     ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A NoteCache holds the complete decay of a set of plucked guitar strings, rendered
+ * once and stored in a file that is memory-mapped read-only. A string plucked with a
+ * seeded excitation always decays the same way, so instead of running Karplus-Strong
+ * for every voice, playback only has to walk through the stored samples (one add
+ * per sample per voice).
+ * <p>
+ * The cache file name is derived from the frequencies, the decay factor and the
+ * seed, and the header stores them too, so a file is reused on later runs only when
+ * it matches. Because the file is mapped read-only, every process playing the same
+ * notes shares one copy of it in the OS page cache.
+ * <p>
+ * File layout (little endian): a header (magic, version, sample rate, note count,
+ * decay factor, seed), then per note its frequency, first sample index and length,
+ * then the samples of every note as floats.
+ *
+ * @author Michael M
+ */
+public final class NoteCache {
+
+	// Notes are rendered until they are quieter than this for a whole period...
+	public static final double SILENCE_THRESHOLD = 1e-4;
+
+	// ...or until they have rung for this long, in seconds
+	public static final int MAX_SECONDS = 30;
+
+	private static final int MAGIC            = 0x4B53_4E43; // "KSNC"
+	private static final int VERSION          = 1;
+	private static final int HEADER_SIZE      = 4 + 4 + 4 + 4 + 8 + 8;
+	private static final int ENTRY_SIZE       = 8 + 8 + 4;
+	private static final int BYTES_PER_SAMPLE = 4;
+
+	// The notes in the cache, in the order they were given
+	private final double[] frequencies;
+	private final long[]   starts;  // index of each note's first sample in samples
+	private final int[]    lengths; // number of samples of each note
+
+	// Every note's samples, back to back, viewed through the mapped file
+	private final FloatBuffer samples;
+
+	// The file this cache is mapped from
+	private final Path file;
+
+
+
+	/**
+	 * Private constructor, see open.
+	 */
+	private NoteCache(Path file, double[] frequencies, long[] starts, int[] lengths, FloatBuffer samples) {
+		this.file = file;
+		this.frequencies = frequencies;
+		this.starts = starts;
+		this.lengths = lengths;
+		this.samples = samples;
+	}
+
+
+
+	/**
+	 * Open the cache for a set of notes, rendering it first if there isn't a
+	 * matching cache file in the directory yet. Note i is a GuitarString created with
+	 * frequencies[i] and plucked with a generator seeded with (seed + i).
+	 *
+	 * @param dir         The directory cache files are kept in
+	 * @param frequencies The frequency of each note's string
+	 * @param seed        Base seed for the pluck excitations
+	 * @return The opened cache
+	 * @throws IOException if the cache file can't be read or written
+	 */
+	public static NoteCache open(Path dir, double[] frequencies, long seed) throws IOException {
+		double decay = GuitarString.ENGERGY_DECAY_FACTOR;
+
+		long key = seed * 31 + Double.doubleToLongBits(decay);
+		for (double f : frequencies) {
+			key = key * 31 + Double.doubleToLongBits(f);
+		}
+		Files.createDirectories(dir);
+		Path file = dir.resolve(String.format("notes-%016x.cache", key));
+
+		if (Files.exists(file)) {
+			NoteCache cache = map(file, frequencies, decay, seed);
+			if (cache != null) {
+				return cache;
+			}
+		}
+
+		// Render to a temporary file first so other processes never map a half-written cache
+		Path temp = Files.createTempFile(dir, "notes-", ".tmp");
+		try {
+			render(temp, frequencies, decay, seed);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+		NoteCache cache = map(file, frequencies, decay, seed);
+		if (cache == null) {
+			throw new IOException("Error - " + "cache file " + file + " doesn't match the notes just rendered into it");
+		}
+		return cache;
+	}
+
+
+
+	/**
+	 * Render every note's decay into a cache file.
+	 */
+	private static void render(Path file, double[] frequencies, double decay, long seed) throws IOException {
+		int        count     = frequencies.length;
+		long[]     starts    = new long[count];
+		int[]      lengths   = new int[count];
+		int        maxLength = MAX_SECONDS * AudioUtils.SAMPLE_RATE;
+		float[]    note      = new float[maxLength];
+		ByteBuffer out       = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE + (long) ENTRY_SIZE * count);
+
+			long start = 0;
+			for (int i = 0; i < count; i++) {
+				GuitarString s = new GuitarString(frequencies[i]);
+				s.pluck(new Random(seed + i));
+
+				// Run the string until it has been quiet for a whole period of the string
+				int period   = GuitarString.delayLength(frequencies[i]);
+				int length   = 0;
+				int quietRun = 0;
+				while (length < maxLength && quietRun < period) {
+					double sample = s.sample();
+					note[length++] = (float) sample;
+					quietRun = Math.abs(sample) < SILENCE_THRESHOLD ? quietRun + 1 : 0;
+					s.tic();
+				}
+
+				starts[i] = start;
+				lengths[i] = length;
+				start += length;
+
+				for (int n = 0; n < length; n++) {
+					if (out.remaining() < BYTES_PER_SAMPLE) {
+						writeFully(channel, out);
+					}
+					out.putFloat(note[n]);
+				}
+			}
+			writeFully(channel, out);
+
+			// Now that every note's place is known, fill in the header
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * count).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(AudioUtils.SAMPLE_RATE).putInt(count);
+			header.putDouble(decay).putLong(seed);
+			for (int i = 0; i < count; i++) {
+				header.putDouble(frequencies[i]).putLong(starts[i]).putInt(lengths[i]);
+			}
+			channel.position(0);
+			writeFully(channel, header);
+		}
+	}
+
+
+
+	/**
+	 * Write everything in the buffer to the channel and clear the buffer.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+
+
+	/**
+	 * Map a cache file read-only and check that it holds the expected notes.
+	 *
+	 * @return The cache, or null if the file doesn't match
+	 */
+	private static NoteCache map(Path file, double[] frequencies, double decay, long seed) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size  = channel.size();
+			int  count = frequencies.length;
+			if (size < HEADER_SIZE + (long) ENTRY_SIZE * count) {
+				return null;
+			}
+
+			// The mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION
+					|| mapped.getInt() != AudioUtils.SAMPLE_RATE || mapped.getInt() != count
+					|| mapped.getDouble() != decay || mapped.getLong() != seed) {
+				return null;
+			}
+
+			double[] freqs   = new double[count];
+			long[]   starts  = new long[count];
+			int[]    lengths = new int[count];
+			long     dataEnd = 0;
+			for (int i = 0; i < count; i++) {
+				freqs[i] = mapped.getDouble();
+				starts[i] = mapped.getLong();
+				lengths[i] = mapped.getInt();
+				dataEnd = Math.max(dataEnd, starts[i] + lengths[i]);
+			}
+			if (!Arrays.equals(freqs, frequencies)
+					|| size < HEADER_SIZE + (long) ENTRY_SIZE * count + dataEnd * BYTES_PER_SAMPLE) {
+				return null;
+			}
+
+			return new NoteCache(file, freqs, starts, lengths, mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+		}
+	}
+
+
+
+	/**
+	 * @return The number of notes in the cache
+	 */
+	public int numNotes() {
+		return frequencies.length;
+	}
+
+
+
+	/**
+	 * @param note The note number
+	 * @return How many samples long the note's decay is
+	 */
+	public int length(int note) {
+		return lengths[note];
+	}
+
+
+
+	/**
+	 * Get one sample of a note's decay.
+	 *
+	 * @param note     The note number
+	 * @param position The sample number, between 0 and length(note) - 1
+	 * @return The sample
+	 */
+	public float sample(int note, int position) {
+		return samples.get((int) (starts[note] + position));
+	}
+
+
+
+	/**
+	 * @return The file the cache is mapped from
+	 */
+	public Path getFile() {
+		return file;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         NullAudioSink.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Headless audio sink that consumes samples in real time ###
+ ###                and counts missed deadlines                            ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A NullAudioSink throws its samples away but keeps the timing of a real sound card.
+ * It models a device buffer of a fixed number of frames that drains at the sample
+ * rate: write blocks while the buffer is too full to take the block (as
+ * SourceDataLine.write does), and if the buffer has run dry by the time the next
+ * block arrives, the engine missed its deadline and the listener would have heard
+ * a dropout.
+ * <p>
+ * The device clock starts with the first write, and after a miss it restarts from
+ * the late block, the same way a real line picks up again after an underrun.
+ *
+ * @author Michael M
+ */
+public class NullAudioSink implements AudioSink {
+
+	// How many frames the simulated device buffers
+	private final int bufferFrames;
+
+	// When the device clock (re)started and how many frames were written since then
+	private long startNanos = -1;
+	private long framesSinceStart;
+
+	// Totals since the sink was created
+	private volatile long framesWritten;
+	private volatile int  deadlineMisses;
+
+
+
+	/**
+	 * Create a sink with a given device buffer size.
+	 *
+	 * @param bufferFrames How many frames the simulated device can hold
+	 * @throws IllegalArgumentException if the buffer size is not positive
+	 */
+	public NullAudioSink(int bufferFrames) {
+		if (bufferFrames <= 0) {
+			throw new IllegalArgumentException("Error - " + "the device buffer needs at least one frame");
+		}
+		this.bufferFrames = bufferFrames;
+	}
+
+
+
+	/**
+	 * Accept a block of samples, blocking until the simulated device has room for it.
+	 *
+	 * @param samples The block of samples (ignored)
+	 * @param length  How many samples are in the block
+	 * @throws IllegalArgumentException if the block is larger than the device buffer
+	 */
+	@Override
+	public void write(double[] samples, int length) {
+		if (length > bufferFrames) {
+			throw new IllegalArgumentException("Error - " + "block of " + length
+					+ " frames doesn't fit the " + bufferFrames + " frame device buffer");
+		}
+
+		long now = System.nanoTime();
+		if (startNanos < 0) {
+			startNanos = now;
+		}
+
+		// Frames still waiting to be played, if negative the device ran out
+		long queued = framesSinceStart - framesPlayed(now);
+		if (queued < 0) {
+			deadlineMisses++;
+			startNanos = now;
+			framesSinceStart = 0;
+			queued = 0;
+		}
+
+		// Wait (like SourceDataLine.write) until the block fits in the device buffer
+		long overflow = queued + length - bufferFrames;
+		if (overflow > 0) {
+			LockSupport.parkNanos(overflow * 1_000_000_000L / AudioUtils.SAMPLE_RATE);
+		}
+
+		framesSinceStart += length;
+		framesWritten += length;
+	}
+
+
+
+	/**
+	 * @param now The current System.nanoTime()
+	 * @return How many frames the device has played since its clock started
+	 */
+	private long framesPlayed(long now) {
+		return (now - startNanos) * AudioUtils.SAMPLE_RATE / 1_000_000_000L;
+	}
+
+
+
+	/**
+	 * @return How many frames have been written since the sink was created
+	 */
+	public long getFramesWritten() {
+		return framesWritten;
+	}
+
+
+
+	/**
+	 * @return How many times the device buffer ran dry before the next block arrived
+	 */
+	public int getDeadlineMisses() {
+		return deadlineMisses;
+	}
+
+
+
+	/**
+	 * @return How many frames the simulated device buffers
+	 */
+	public int getBufferFrames() {
+		return bufferFrames;
+	}
+}
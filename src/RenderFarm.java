@@ -0,0 +1,216 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         RenderFarm.java            	                           ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Splits an offline render of a score across several     ###
+ ###                worker JVMs and sums their streams into one mix        ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The RenderFarm coordinates an offline render that is too big for one JVM. It starts
+ * one {@link RenderWorker} process per partition of the score's voices, reads every
+ * worker's sample stream one block at a time, adds the blocks together and writes
+ * the clipped result as a 16-bit mono WAV file.
+ * <p>
+ * Workers are local child processes started with the same java binary and class
+ * path as the coordinator, and their streams are read from their standard out.
+ * Since every voice is seeded on its own, rendering with 1 worker or with 8 gives
+ * the same mix (up to float rounding in the partial sums, at most 1 bit of the
+ * 16-bit output).
+ * <p>
+ * Usage: java RenderFarm score.txt out.wav [workers] [seed]
+ *
+ * @author Michael M
+ */
+public final class RenderFarm {
+
+	// Output format: 16-bit mono PCM at the AudioUtils sample rate
+	private static final int    BYTES_PER_SAMPLE = 2;
+	private static final double MAX_16_BIT       = 32768;
+	private static final int    WAV_HEADER_SIZE  = 44;
+
+	// WAV chunk sizes are unsigned 32-bit, so the RIFF chunk (everything after its
+	// first 8 bytes) can't hold more samples than this
+	private static final long MAX_WAV_FRAMES = (0xFFFFFFFFL - (WAV_HEADER_SIZE - 8)) / BYTES_PER_SAMPLE;
+
+	// Not meant to be instantiated, see main and render
+	private RenderFarm() { }
+
+
+
+	/**
+	 * Entry point, renders a score file to a WAV file.
+	 *
+	 * @param args score file, output file, optional worker count (defaults to the
+	 *             number of processors) and optional seed (defaults to 0)
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: java RenderFarm score.txt out.wav [workers] [seed]");
+			System.exit(2);
+		}
+		Path score   = Paths.get(args[0]);
+		Path output  = Paths.get(args[1]);
+		int  workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed    = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+		long start  = System.nanoTime();
+		int  frames = render(score, output, workers, seed);
+		System.out.printf("Rendered %d frames (%.1f s of audio) with %d workers in %.1f s%n",
+				frames, frames / (double) AudioUtils.SAMPLE_RATE, workers, (System.nanoTime() - start) / 1e9);
+	}
+
+
+
+	/**
+	 * Render a score with worker processes and write the mix to a WAV file.
+	 *
+	 * @param scoreFile The score to render
+	 * @param output    The WAV file to write
+	 * @param workers   How many worker processes to split the voices between
+	 * @param seed      Base seed for the pluck excitations
+	 * @return The number of frames rendered
+	 * @throws IOException if a worker fails or the output can't be written
+	 * @throws InterruptedException if interrupted while waiting for the workers to exit
+	 * @throws IllegalArgumentException if the score is malformed or too long for a WAV file
+	 */
+	public static int render(Path scoreFile, Path output, int workers, long seed) throws IOException, InterruptedException {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Error - " + "need at least one worker");
+		}
+		Score score       = Score.load(scoreFile);
+		int   totalFrames = score.totalFrames();
+		if (totalFrames > MAX_WAV_FRAMES) {
+			throw new IllegalArgumentException("Error - " + "the score is " + totalFrames + " frames long, a WAV file holds at most "
+					+ MAX_WAV_FRAMES);
+		}
+
+		// Start the workers, each streams its samples back over standard out
+		String                java            = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<Process>         workerProcesses = new ArrayList<>();
+		List<DataInputStream> streams         = new ArrayList<>();
+		try {
+			for (int w = 0; w < workers; w++) {
+				ProcessBuilder builder = new ProcessBuilder(java,
+						"-cp", System.getProperty("java.class.path"),
+						RenderWorker.class.getName(),
+						scoreFile.toAbsolutePath().toString(),
+						Integer.toString(w), Integer.toString(workers), Long.toString(seed));
+				builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+				Process p = builder.start();
+				workerProcesses.add(p);
+				streams.add(new DataInputStream(new BufferedInputStream(p.getInputStream(),
+						RenderWorker.BLOCK_SIZE * RenderWorker.BYTES_PER_SAMPLE * 16)));
+			}
+
+			try (RandomAccessFile out = new RandomAccessFile(output.toFile(), "rw")) {
+				out.setLength(0);
+				out.write(wavHeader(totalFrames));
+
+				double[]   mix      = new double[RenderWorker.BLOCK_SIZE];
+				byte[]     in       = new byte[RenderWorker.BLOCK_SIZE * RenderWorker.BYTES_PER_SAMPLE];
+				ByteBuffer inBuffer = ByteBuffer.wrap(in);
+				ByteBuffer pcm      = ByteBuffer.allocate(RenderWorker.BLOCK_SIZE * BYTES_PER_SAMPLE).order(ByteOrder.LITTLE_ENDIAN);
+
+				// Sum the workers' streams block by block
+				for (int blockStart = 0; blockStart < totalFrames; blockStart += RenderWorker.BLOCK_SIZE) {
+					int frames = Math.min(RenderWorker.BLOCK_SIZE, totalFrames - blockStart);
+					for (int n = 0; n < frames; n++) {
+						mix[n] = 0;
+					}
+					for (int w = 0; w < workers; w++) {
+						try {
+							streams.get(w).readFully(in, 0, frames * RenderWorker.BYTES_PER_SAMPLE);
+						} catch (EOFException e) {
+							throw new IOException("Error - " + "worker " + w + " stopped after "
+									+ blockStart + " of " + totalFrames + " frames", e);
+						}
+						inBuffer.clear();
+						for (int n = 0; n < frames; n++) {
+							mix[n] += inBuffer.getFloat();
+						}
+					}
+
+					pcm.clear();
+					for (int n = 0; n < frames; n++) {
+						pcm.putShort(toPcm(mix[n]));
+					}
+					out.write(pcm.array(), 0, pcm.position());
+				}
+			}
+
+			for (int w = 0; w < workers; w++) {
+				int exit = workerProcesses.get(w).waitFor();
+				if (exit != 0) {
+					throw new IOException("Error - " + "worker " + w + " exited with status " + exit);
+				}
+			}
+		} finally {
+			for (Process p : workerProcesses) {
+				p.destroy();
+			}
+		}
+		return totalFrames;
+	}
+
+
+
+	/**
+	 * Convert a sample to 16-bit PCM, clipping it to [-1, +1] the same way AudioUtils does.
+	 *
+	 * @param sample The sample to convert
+	 * @return The 16-bit value
+	 */
+	private static short toPcm(double sample) {
+		if (sample < -1.0) sample = -1.0;
+		if (sample > +1.0) sample = +1.0;
+		if (sample == 1.0) return Short.MAX_VALUE; // special case since 32768 not a short
+		return (short) (MAX_16_BIT * sample);
+	}
+
+
+
+	/**
+	 * Build the header of a 16-bit mono PCM WAV file.
+	 *
+	 * @param frames The number of samples that follow the header, at most MAX_WAV_FRAMES
+	 * @return The header bytes
+	 */
+	private static byte[] wavHeader(int frames) {
+		long       dataSize = (long) frames * BYTES_PER_SAMPLE;
+		ByteBuffer header   = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[] { 'R', 'I', 'F', 'F' });
+		header.putInt((int) (WAV_HEADER_SIZE - 8 + dataSize));         // unsigned
+		header.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' });
+		header.putInt(16);                                             // size of the fmt chunk
+		header.putShort((short) 1);                                    // PCM
+		header.putShort((short) 1);                                    // mono
+		header.putInt(AudioUtils.SAMPLE_RATE);
+		header.putInt(AudioUtils.SAMPLE_RATE * BYTES_PER_SAMPLE);      // byte rate
+		header.putShort((short) BYTES_PER_SAMPLE);                     // block align
+		header.putShort((short) (BYTES_PER_SAMPLE * 8));               // bits per sample
+		header.put(new byte[] { 'd', 'a', 't', 'a' });
+		header.putInt((int) dataSize);                                 // unsigned
+		return header.array();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         RenderWorker.java            	                       ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   Renders one partition of a score's voices to a raw     ###
+ ###                sample stream for the RenderFarm                       ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * A RenderWorker renders its share of a score's voices and writes the un-clipped sum
+ * as a raw stream of samples. Voices are split between workers by voice number
+ * (voice i goes to worker i % workers), and Karplus-Strong voices don't interact, so
+ * the coordinating {@link RenderFarm} only has to add the workers' streams together.
+ * <p>
+ * The stream is BLOCK_SIZE samples at a time, every sample a big-endian 32-bit float,
+ * for exactly score.totalFrames() samples. Each voice is plucked with a generator
+ * seeded with (seed + voice number), so the mix doesn't depend on how many workers
+ * rendered it.
+ * <p>
+ * Usage: java RenderWorker score.txt workerIndex workerCount seed
+ *
+ * @author Michael M
+ */
+public final class RenderWorker {
+
+	// How many samples are rendered and written at a time
+	public static final int BLOCK_SIZE = MixerEngine.BLOCK_SIZE;
+
+	// Bytes per sample in the stream (one float)
+	public static final int BYTES_PER_SAMPLE = 4;
+
+	// Not meant to be instantiated, see main and render
+	private RenderWorker() { }
+
+
+
+	/**
+	 * Entry point when started by the RenderFarm, writes the stream to standard out.
+	 *
+	 * @param args score file, worker index, worker count and seed
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err.println("Usage: java RenderWorker score.txt workerIndex workerCount seed");
+			System.exit(2);
+		}
+		Score score   = Score.load(Paths.get(args[0]));
+		int   worker  = Integer.parseInt(args[1]);
+		int   workers = Integer.parseInt(args[2]);
+		long  seed    = Long.parseLong(args[3]);
+
+		OutputStream out = new BufferedOutputStream(System.out, BLOCK_SIZE * BYTES_PER_SAMPLE * 16);
+		render(score, worker, workers, seed, out);
+		out.flush();
+	}
+
+
+
+	/**
+	 * Render this worker's voices of the score and write them to a stream.
+	 *
+	 * @param score   The score to render
+	 * @param worker  Which partition to render, between 0 and workers - 1
+	 * @param workers How many partitions the voices are split into
+	 * @param seed    Base seed for the pluck excitations
+	 * @param out     Where to write the samples
+	 * @throws IOException if writing to the stream fails
+	 * @throws IllegalArgumentException if the worker index is out of range
+	 */
+	public static void render(Score score, int worker, int workers, long seed, OutputStream out) throws IOException {
+		if (workers < 1 || worker < 0 || worker >= workers) {
+			throw new IllegalArgumentException("Error - " + "worker " + worker + " of " + workers + " is out of range");
+		}
+
+		// This worker's voices, in the order they start
+		ArrayList<Integer> mine = new ArrayList<>();
+		for (int v = worker; v < score.numVoices(); v += workers) {
+			mine.add(v);
+		}
+		mine.sort(Comparator.comparingInt(score::startFrame));
+
+		// Voices that have been plucked and haven't finished ringing
+		ArrayList<Integer>      activeVoices  = new ArrayList<>();
+		ArrayList<GuitarString> activeStrings = new ArrayList<>();
+		int                     nextVoice     = 0;
+
+		double[]   block = new double[BLOCK_SIZE];
+		ByteBuffer bytes = ByteBuffer.allocate(BLOCK_SIZE * BYTES_PER_SAMPLE);
+
+		for (int blockStart = 0; blockStart < score.totalFrames(); blockStart += BLOCK_SIZE) {
+			int blockEnd = Math.min(blockStart + BLOCK_SIZE, score.totalFrames());
+
+			// Pluck every voice that starts in this block
+			while (nextVoice < mine.size() && score.startFrame(mine.get(nextVoice)) < blockEnd) {
+				int          v = mine.get(nextVoice++);
+				GuitarString s = new GuitarString(score.frequency(v));
+				s.pluck(new Random(seed + v));
+				activeVoices.add(v);
+				activeStrings.add(s);
+			}
+
+			// Superposition of every ringing voice, each over the part of the block it covers
+			Arrays.fill(block, 0);
+			for (int i = activeVoices.size() - 1; i >= 0; i--) {
+				int          v     = activeVoices.get(i);
+				GuitarString s     = activeStrings.get(i);
+				int          end   = score.startFrame(v) + score.length(v);
+				int          from  = Math.max(score.startFrame(v), blockStart);
+				int          until = Math.min(end, blockEnd);
+				for (int f = from; f < until; f++) {
+					block[f - blockStart] += s.sample();
+					s.tic();
+				}
+
+				// Stop simulating voices that have finished or died away
+				if (end <= blockEnd || s.isSilent()) {
+					int last = activeVoices.size() - 1;
+					activeVoices.set(i, activeVoices.get(last));
+					activeStrings.set(i, activeStrings.get(last));
+					activeVoices.remove(last);
+					activeStrings.remove(last);
+				}
+			}
+
+			bytes.clear();
+			for (int n = 0; n < blockEnd - blockStart; n++) {
+				bytes.putFloat((float) block[n]);
+			}
+			out.write(bytes.array(), 0, bytes.position());
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ #############################################################################
+ ###                                                                       ###
+ ### Title:         Guitar Hero                                            ###
+ ###                                                                       ###
+ ### Files:         Score.java            	                               ###
+ ### Author(s):     Michael Metz (mime9599@colorado.edu)                   ###
+ ### Semester:      Fall 2026                                              ###
+ ### Written:       October 19, 2026                                       ###
+ ### Description:   A list of timed plucks to be rendered offline          ###
+ ### License:                                                              ###
+ ### Credits:                                                              ###
+ #############################################################################
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * A Score is a list of voices for offline rendering. Every voice is a single guitar
+ * string that is plucked at a start time and rings for a duration, after which it
+ * stops being simulated. Voices are numbered in the order they appear in the score.
+ * <p>
+ * Scores are plain text, one voice per line:
+ * <pre>
+ *     # start (seconds)   frequency (Hz)   [duration (seconds)]
+ *     0.0                 130.8            2.5
+ *     0.25                174.6
+ * </pre>
+ * The frequency is in Hz (it is passed to the GuitarString constructor), and must be
+ * positive. Blank lines and lines starting with '#' are ignored, and the duration
+ * defaults to DEFAULT_DURATION. Every voice must stop ringing within MAX_FRAMES of the
+ * start of the score (about 13.5 hours).
+ *
+ * @author Michael M
+ */
+public final class Score {
+
+	// How long a voice rings when the score doesn't say, in seconds
+	public static final double DEFAULT_DURATION = 4.0;
+
+	// The latest frame a voice may ring until, frames are counted in ints
+	public static final int MAX_FRAMES = Integer.MAX_VALUE;
+
+	// Per-voice start frame, length in frames and string frequency
+	private final int[]    startFrames;
+	private final int[]    lengths;
+	private final double[] frequencies;
+
+	// Number of frames until the last voice stops ringing
+	private final int totalFrames;
+
+
+
+	/**
+	 * Create a score from per-voice arrays (all the same length).
+	 *
+	 * @param startFrames The frame each voice is plucked at
+	 * @param lengths     How many frames each voice rings for
+	 * @param frequencies The frequency of each voice's string
+	 * @throws IllegalArgumentException if the arrays differ in length, hold negative times,
+	 *                                  a voice rings past MAX_FRAMES or a frequency isn't positive
+	 */
+	public Score(int[] startFrames, int[] lengths, double[] frequencies) {
+		if (startFrames.length != lengths.length || startFrames.length != frequencies.length) {
+			throw new IllegalArgumentException("Error - " + "every voice needs a start, a length and a frequency");
+		}
+		long end = 0;
+		for (int i = 0; i < startFrames.length; i++) {
+			if (startFrames[i] < 0 || lengths[i] < 0) {
+				throw new IllegalArgumentException("Error - " + "voice " + i + " has a negative start or length");
+			}
+			if ((long) startFrames[i] + lengths[i] > MAX_FRAMES) {
+				throw new IllegalArgumentException("Error - " + "voice " + i + " rings past frame " + MAX_FRAMES);
+			}
+			if (!(frequencies[i] > 0) || Double.isInfinite(frequencies[i])) {
+				throw new IllegalArgumentException("Error - " + "voice " + i + " has frequency " + frequencies[i]
+						+ ", it must be positive");
+			}
+			end = Math.max(end, (long) startFrames[i] + lengths[i]);
+		}
+		this.startFrames = startFrames.clone();
+		this.lengths = lengths.clone();
+		this.frequencies = frequencies.clone();
+		this.totalFrames = (int) end;
+	}
+
+
+
+	/**
+	 * Read a score from a text file.
+	 *
+	 * @param file The score to read
+	 * @return The parsed score
+	 * @throws IOException if the file can't be read
+	 * @throws IllegalArgumentException if a line is malformed or out of range (see the Score constructor)
+	 */
+	public static Score load(Path file) throws IOException {
+		ArrayList<double[]> voices = new ArrayList<>();
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			int    lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) { continue; }
+
+				String[] fields = line.split("\\s+");
+				if (fields.length < 2 || fields.length > 3) {
+					throw new IllegalArgumentException("Error - " + file + ":" + lineNumber
+							+ ": expected 'start frequency [duration]'");
+				}
+				try {
+					double start    = Double.parseDouble(fields[0]);
+					double freq     = Double.parseDouble(fields[1]);
+					double duration = fields.length == 3 ? Double.parseDouble(fields[2]) : DEFAULT_DURATION;
+					if (!(start >= 0 && duration >= 0 && (start + duration) * AudioUtils.SAMPLE_RATE <= MAX_FRAMES)) {
+						throw new IllegalArgumentException("Error - " + file + ":" + lineNumber
+								+ ": the start and duration must not be negative, and must end within "
+								+ MAX_FRAMES / AudioUtils.SAMPLE_RATE + " seconds");
+					}
+					if (!(freq > 0) || Double.isInfinite(freq)) {
+						throw new IllegalArgumentException("Error - " + file + ":" + lineNumber
+								+ ": the frequency must be positive, got " + fields[1]);
+					}
+					voices.add(new double[] { start, freq, duration });
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Error - " + file + ":" + lineNumber
+							+ ": " + e.getMessage(), e);
+				}
+			}
+		}
+
+		int[]    startFrames = new int[voices.size()];
+		int[]    lengths     = new int[voices.size()];
+		double[] frequencies = new double[voices.size()];
+		for (int i = 0; i < voices.size(); i++) {
+			double[] v = voices.get(i);
+			startFrames[i] = (int) Math.round(v[0] * AudioUtils.SAMPLE_RATE);
+			frequencies[i] = v[1];
+			lengths[i] = (int) Math.round(v[2] * AudioUtils.SAMPLE_RATE);
+		}
+		return new Score(startFrames, lengths, frequencies);
+	}
+
+
+
+	/**
+	 * @return The number of voices in the score
+	 */
+	public int numVoices() {
+		return startFrames.length;
+	}
+
+
+
+	/**
+	 * @param voice The voice number
+	 * @return The frame the voice is plucked at
+	 */
+	public int startFrame(int voice) {
+		return startFrames[voice];
+	}
+
+
+
+	/**
+	 * @param voice The voice number
+	 * @return How many frames the voice rings for
+	 */
+	public int length(int voice) {
+		return lengths[voice];
+	}
+
+
+
+	/**
+	 * @param voice The voice number
+	 * @return The frequency of the voice's string
+	 */
+	public double frequency(int voice) {
+		return frequencies[voice];
+	}
+
+
+
+	/**
+	 * @return The number of frames until the last voice stops ringing
+	 */
+	public int totalFrames() {
+		return totalFrames;
+	}
+}